@@ -0,0 +1,88 @@
+package com.example.ecommerce;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.launcher.TestPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-of-plan latency after every test ran once in the plan. {@code planFinished} is what the
+ * next Surefire rerun round waits for; {@code planFinishedAndWritten} also waits until the
+ * background writer has printed the console summary and written the report to
+ * {@code target/} of the working directory.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PlanFinishedBenchmark {
+
+  // Fail once, then pass: enough flaky tests for every report section, few enough to keep the console short
+  private static final int FLAKY_TESTS = 10;
+
+  @Param({"1000", "100000", "1000000"})
+  public int tests;
+
+  @Param({"false", "true"})
+  public boolean compactTracker;
+
+  private final Throwable failure = new AssertionError("synthetic");
+  private final TestExecutionResult passedResult = TestExecutionResult.successful();
+  private final TestExecutionResult failedResult = TestExecutionResult.failed(failure);
+  private MyTestWatcher watcher;
+  private SyntheticTests synthetic;
+  private TestPlan plan;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    synthetic = new SyntheticTests(tests);
+    watcher = new MyTestWatcher();
+    plan = SyntheticTests.plan(compactTracker);
+  }
+
+  @Setup(Level.Invocation)
+  public void runPlan() {
+    watcher.testPlanExecutionStarted(plan);
+    for (int test = 0; test < synthetic.size(); test++) {
+      if (test < FLAKY_TESTS) {
+        watcher.executionStarted(synthetic.identifier(test));
+        watcher.testFailed(synthetic.context(test), failure);
+        watcher.executionFinished(synthetic.identifier(test), failedResult);
+      }
+      watcher.executionStarted(synthetic.identifier(test));
+      watcher.testSuccessful(synthetic.context(test));
+      watcher.executionFinished(synthetic.identifier(test), passedResult);
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void awaitReport() {
+    // Keeps the previous plan's report from overlapping the next measurement
+    DataStore.instance.getReports().flush();
+  }
+
+  @Benchmark
+  public void planFinished() {
+    watcher.testPlanExecutionFinished(plan);
+  }
+
+  @Benchmark
+  public void planFinishedAndWritten() {
+    watcher.testPlanExecutionFinished(plan);
+    DataStore.instance.getReports().flush();
+  }
+}
@@ -0,0 +1,118 @@
+package com.example.ecommerce;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+/**
+ * Synthetic tests for driving {@link MyTestWatcher} without a test engine. Extension contexts
+ * are proxies that answer only what the watcher asks for; everything else throws, so a watcher
+ * change that starts using more of the context shows up here instead of measuring a stub.
+ */
+final class SyntheticTests {
+
+  // Spread over classes like a real module; per-class totals only see the test class
+  private static final int TESTS_PER_CLASS = 100;
+
+  private final ExtensionContext[] contexts;
+  private final TestIdentifier[] identifiers;
+
+  SyntheticTests(int count) {
+    contexts = new ExtensionContext[count];
+    identifiers = new TestIdentifier[count];
+    for (int i = 0; i < count; i++) {
+      String uniqueId = String.format("[engine:junit-jupiter]/[class:bench.SyntheticTest%d]/[method:test%d()]",
+          i / TESTS_PER_CLASS, i);
+      contexts[i] = context(uniqueId);
+      identifiers[i] = TestIdentifier.from(new Descriptor(UniqueId.parse(uniqueId), "test" + i + "()"));
+    }
+  }
+
+  int size() {
+    return contexts.length;
+  }
+
+  ExtensionContext context(int test) {
+    return contexts[test];
+  }
+
+  TestIdentifier identifier(int test) {
+    return identifiers[test];
+  }
+
+  /**
+   * Plan with the watcher's defaults, except that the history is off so runs do not depend on
+   * earlier ones, the stall watchdog is off, and the tracker is the one under measurement.
+   */
+  static TestPlan plan(boolean compactTracker) {
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put(WatcherConfig.HISTORY_ENABLED, "false");
+    parameters.put(WatcherConfig.STALL_TIMEOUT, "0");
+    parameters.put(WatcherConfig.COMPACT_TRACKER, Boolean.toString(compactTracker));
+    return new TestPlan(true, configuration(parameters)) {
+    };
+  }
+
+  private static ExtensionContext context(String uniqueId) {
+    return (ExtensionContext) Proxy.newProxyInstance(SyntheticTests.class.getClassLoader(),
+        new Class<?>[] {ExtensionContext.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getUniqueId":
+              return uniqueId;
+            case "getTestClass":
+              return Optional.of(SyntheticTests.class);
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return uniqueId;
+            default:
+              throw new UnsupportedOperationException("Synthetic context has no " + method.getName());
+          }
+        });
+  }
+
+  private static ConfigurationParameters configuration(Map<String, String> parameters) {
+    return (ConfigurationParameters) Proxy.newProxyInstance(SyntheticTests.class.getClassLoader(),
+        new Class<?>[] {ConfigurationParameters.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "get":
+              return Optional.ofNullable(parameters.get((String) args[0]));
+            case "getBoolean":
+              return Optional.ofNullable(parameters.get((String) args[0])).map(Boolean::valueOf);
+            case "keySet":
+              return parameters.keySet();
+            case "size":
+              return parameters.size();
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return parameters.toString();
+            default:
+              throw new UnsupportedOperationException("Synthetic configuration has no " + method.getName());
+          }
+        });
+  }
+
+  private static final class Descriptor extends AbstractTestDescriptor {
+
+    Descriptor(UniqueId uniqueId, String displayName) {
+      super(uniqueId, displayName);
+    }
+
+    @Override
+    public Type getType() {
+      return Type.TEST;
+    }
+  }
+}
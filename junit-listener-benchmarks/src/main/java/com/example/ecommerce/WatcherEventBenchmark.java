@@ -0,0 +1,111 @@
+package com.example.ecommerce;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.platform.engine.TestExecutionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Cost of one test attempt as the watcher sees it: executionStarted, testSuccessful or
+ * testFailed, and executionFinished. Each thread cycles through its own slice of the tests,
+ * since JUnit never runs one test twice at the same time. After the first pass every test is
+ * known, so the numbers are the steady state of a long suite or of rerun rounds.
+ *
+ * <p>Run with {@code -prof gc}; {@code gc.alloc.rate.norm} is the bytes allocated per attempt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class WatcherEventBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int tests;
+
+  @Param({"false", "true"})
+  public boolean compactTracker;
+
+  private final Throwable failure = new AssertionError("synthetic");
+  private final TestExecutionResult passedResult = TestExecutionResult.successful();
+  private final TestExecutionResult failedResult = TestExecutionResult.failed(failure);
+  private MyTestWatcher watcher;
+  private SyntheticTests synthetic;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    synthetic = new SyntheticTests(tests);
+    watcher = new MyTestWatcher();
+    watcher.testPlanExecutionStarted(SyntheticTests.plan(compactTracker));
+  }
+
+  @State(Scope.Thread)
+  public static class Slice {
+    private int first;
+    private int end;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(WatcherEventBenchmark benchmark, ThreadParams threads) {
+      int count = benchmark.tests;
+      first = (int) ((long) count * threads.getThreadIndex() / threads.getThreadCount());
+      end = (int) ((long) count * (threads.getThreadIndex() + 1) / threads.getThreadCount());
+      next = first;
+    }
+
+    int next() {
+      int test = next;
+      next = test + 1 < end ? test + 1 : first;
+      return test;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void passed(Slice slice) {
+    pass(slice.next());
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void passedConcurrent(Slice slice) {
+    pass(slice.next());
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void failed(Slice slice) {
+    fail(slice.next());
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void failedConcurrent(Slice slice) {
+    fail(slice.next());
+  }
+
+  private void pass(int test) {
+    watcher.executionStarted(synthetic.identifier(test));
+    watcher.testSuccessful(synthetic.context(test));
+    watcher.executionFinished(synthetic.identifier(test), passedResult);
+  }
+
+  private void fail(int test) {
+    watcher.executionStarted(synthetic.identifier(test));
+    watcher.testFailed(synthetic.context(test), failure);
+    watcher.executionFinished(synthetic.identifier(test), failedResult);
+  }
+}
@@ -0,0 +1,90 @@
+package com.example.ecommerce;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads the bytes allocated by the current thread, for per-attempt allocation accounting.
+ *
+ * <p>Uses {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes}, which HotSpot
+ * answers from the thread's TLAB counters. Only allocations of the test's own worker thread are
+ * counted, not those of threads the test starts. The cost of a read is calibrated once when
+ * accounting is enabled, so the report can state the overhead without timing every read.
+ */
+final class AllocationMeter {
+
+  private static final int CALIBRATION_READS = 10_000;
+
+  private final com.sun.management.ThreadMXBean threads = resolve();
+  private final LongAdder reads = new LongAdder();
+  private volatile boolean enabled;
+  private volatile double nanosPerRead = -1;
+
+  /** Turns accounting on or off; stays off if the JVM cannot measure allocations. */
+  synchronized void setEnabled(boolean enable) {
+    if (enable && threads != null) {
+      try {
+        if (!threads.isThreadAllocatedMemoryEnabled()) {
+          threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        if (nanosPerRead < 0) {
+          nanosPerRead = calibrate();
+        }
+        enabled = true;
+        return;
+      } catch (UnsupportedOperationException | SecurityException e) {
+        System.err.println("Allocation accounting disabled: " + e.getMessage());
+      }
+    }
+    enabled = false;
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  boolean isSupported() {
+    return threads != null;
+  }
+
+  /** Bytes allocated by the current thread so far, or -1 when accounting is off. */
+  long currentThreadAllocatedBytes() {
+    if (!enabled) {
+      return -1;
+    }
+    reads.increment();
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  long getReads() {
+    return reads.sum();
+  }
+
+  /** Calibrated cost of one read, or -1 if accounting was never enabled. */
+  double getNanosPerRead() {
+    return nanosPerRead;
+  }
+
+  private double calibrate() {
+    long id = Thread.currentThread().getId();
+    // Warm up first, so the calibration measures compiled code
+    for (int i = 0; i < CALIBRATION_READS; i++) {
+      threads.getThreadAllocatedBytes(id);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < CALIBRATION_READS; i++) {
+      threads.getThreadAllocatedBytes(id);
+    }
+    return (double) (System.nanoTime() - start) / CALIBRATION_READS;
+  }
+
+  private static com.sun.management.ThreadMXBean resolve() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return null;
+    }
+    com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+    return hotspot.isThreadAllocatedMemorySupported() ? hotspot : null;
+  }
+}
@@ -0,0 +1,151 @@
+package com.example.ecommerce;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Start point of a running test attempt. Taken in executionStarted and closed in the
+ * TestWatcher callback, which JUnit invokes on the same worker thread.
+ */
+final class AttemptClock {
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  // Resolved once: getCurrentThreadCpuTime is cheap, the capability checks are not
+  private static final boolean CPU_TIME_ENABLED = isCpuTimeEnabled();
+
+  private static final AtomicLongFieldUpdater<AttemptClock> GC_NANOS =
+      AtomicLongFieldUpdater.newUpdater(AttemptClock.class, "gcNanos");
+
+  private final long startNanos;
+  private final long startCpuNanos;
+  private final long startAllocatedBytes;
+  private final long threadId = Thread.currentThread().getId();
+  // JFR TestAttempt event begun with the attempt, or null
+  private final Object jfrEvent;
+  // GC pause time charged while running; the sign bit is set once the attempt is closed
+  private volatile long gcNanos;
+  // Set by the finishing thread before the clock is published to the GcMonitor's recent attempts
+  private MyTestWatcher.Data data;
+  private boolean failed;
+  private long endNanos;
+  // Last pause charged to gcNanos; GcMonitor lock only
+  private long chargedPause;
+  // Watchdog thread only
+  private boolean stalled;
+
+  private AttemptClock(long startNanos, long startCpuNanos, long startAllocatedBytes, Object jfrEvent) {
+    this.startNanos = startNanos;
+    this.startCpuNanos = startCpuNanos;
+    this.startAllocatedBytes = startAllocatedBytes;
+    this.jfrEvent = jfrEvent;
+  }
+
+  static AttemptClock start() {
+    long allocatedBytes = DataStore.instance.getAllocationMeter().currentThreadAllocatedBytes();
+    return new AttemptClock(System.nanoTime(), currentThreadCpuTime(), allocatedBytes, JfrEvents.attemptStarted());
+  }
+
+  Object getJfrEvent() {
+    return jfrEvent;
+  }
+
+  long getStartNanos() {
+    return startNanos;
+  }
+
+  /** Id of the thread that runs the attempt. */
+  long getThreadId() {
+    return threadId;
+  }
+
+  boolean isStalled() {
+    return stalled;
+  }
+
+  void markStalled() {
+    stalled = true;
+  }
+
+  long elapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+
+  /** CPU time of the current thread since start, or -1 if the JVM does not measure it. */
+  long elapsedCpuNanos() {
+    if (startCpuNanos < 0) {
+      return -1;
+    }
+    long now = currentThreadCpuTime();
+    return now < 0 ? -1 : now - startCpuNanos;
+  }
+
+  /** Bytes allocated by the current thread since start, or -1 if accounting is off. */
+  long elapsedAllocatedBytes() {
+    if (startAllocatedBytes < 0) {
+      return -1;
+    }
+    long now = DataStore.instance.getAllocationMeter().currentThreadAllocatedBytes();
+    return now < 0 ? -1 : now - startAllocatedBytes;
+  }
+
+  /**
+   * Charges a GC pause to the running attempt.
+   *
+   * @return false if the attempt is closed; the pause then belongs to its test's totals
+   */
+  boolean addGc(long nanos) {
+    while (true) {
+      long current = gcNanos;
+      if (current < 0) {
+        return false;
+      }
+      if (GC_NANOS.compareAndSet(this, current, current + nanos)) {
+        return true;
+      }
+    }
+  }
+
+  long closeGc() {
+    return GC_NANOS.getAndUpdate(this, current -> current | Long.MIN_VALUE) & Long.MAX_VALUE;
+  }
+
+  void finish(MyTestWatcher.Data data, boolean failed, long endNanos) {
+    this.data = data;
+    this.failed = failed;
+    this.endNanos = endNanos;
+  }
+
+  MyTestWatcher.Data getData() {
+    return data;
+  }
+
+  boolean isFailed() {
+    return failed;
+  }
+
+  long getEndNanos() {
+    return endNanos;
+  }
+
+  long getChargedPause() {
+    return chargedPause;
+  }
+
+  void setChargedPause(long pause) {
+    chargedPause = pause;
+  }
+
+  private static long currentThreadCpuTime() {
+    return CPU_TIME_ENABLED ? THREADS.getCurrentThreadCpuTime() : -1;
+  }
+
+  private static boolean isCpuTimeEnabled() {
+    try {
+      return THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    } catch (UnsupportedOperationException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,372 @@
+package com.example.ecommerce;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Compact binary encoding of the report layout written by {@link ReportWriter}.
+ *
+ * <p>The file starts with a magic number and version, followed by records of the form
+ * {@code [type byte][varint length][payload]}. Every distinct string (member names, test
+ * names, statuses, traces) is written once as a {@code STRING} record and referenced by its
+ * index afterwards, so repeated keys and class names cost one or two bytes. Strings are
+ * defined just before the first entry that uses them, so the file can be written and read
+ * in a single streaming pass. Readers skip record types they do not know.
+ *
+ * <p>Entries are the same Gson DTOs as in the JSON report, encoded as tagged values, so
+ * {@link ReportConverter} turns a binary report back into the equivalent JSON.
+ */
+final class BinaryReport {
+
+  static final String EXTENSION = ".bin";
+
+  static final int MAGIC = 0x4a57_5242;
+  static final int VERSION = 1;
+
+  // Record types
+  static final byte STRING = 1;
+  static final byte SECTION_BEGIN = 2;
+  static final byte ENTRY = 3;
+  static final byte SECTION_END = 4;
+
+  // Value tags inside an ENTRY record
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte STRING_REF = 5;
+  private static final byte ARRAY = 6;
+  private static final byte OBJECT = 7;
+
+  private BinaryReport() {
+  }
+
+  /** Peeks at the magic number without consuming it. */
+  static boolean isBinary(BufferedInputStream in) throws IOException {
+    in.mark(4);
+    try {
+      return new DataInputStream(in).readInt() == MAGIC;
+    } catch (EOFException e) {
+      return false;
+    } finally {
+      in.reset();
+    }
+  }
+
+  /** Writes a binary report. Not thread-safe, like the JSON writer. */
+  static final class Writer extends ReportWriter {
+
+    private final Gson gson = new Gson();
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    // Reused for every record payload
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(1024);
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private final List<String> pending = new ArrayList<>();
+
+    Writer(OutputStream out) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+      this.out.writeInt(MAGIC);
+      this.out.writeInt(VERSION);
+    }
+
+    @Override
+    void beginSection(String name) throws IOException {
+      payload.reset();
+      writeVarInt(payloadOut, ref(name));
+      flushStrings();
+      writeRecord(SECTION_BEGIN);
+    }
+
+    @Override
+    void writeEntry(Object entry) throws IOException {
+      payload.reset();
+      writeValue(gson.toJsonTree(entry, entry.getClass()));
+      flushStrings();
+      writeRecord(ENTRY);
+    }
+
+    @Override
+    void endSection() throws IOException {
+      payload.reset();
+      writeRecord(SECTION_END);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+
+    private void writeValue(JsonElement value) throws IOException {
+      if (value == null || value.isJsonNull()) {
+        payloadOut.writeByte(NULL);
+      } else if (value.isJsonObject()) {
+        JsonObject object = value.getAsJsonObject();
+        payloadOut.writeByte(OBJECT);
+        writeVarInt(payloadOut, object.size());
+        for (Entry<String, JsonElement> member : object.entrySet()) {
+          writeVarInt(payloadOut, ref(member.getKey()));
+          writeValue(member.getValue());
+        }
+      } else if (value.isJsonArray()) {
+        JsonArray array = value.getAsJsonArray();
+        payloadOut.writeByte(ARRAY);
+        writeVarInt(payloadOut, array.size());
+        for (JsonElement element : array) {
+          writeValue(element);
+        }
+      } else {
+        writePrimitive(value.getAsJsonPrimitive());
+      }
+    }
+
+    private void writePrimitive(JsonPrimitive primitive) throws IOException {
+      if (primitive.isBoolean()) {
+        payloadOut.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+      } else if (primitive.isNumber()) {
+        Number number = primitive.getAsNumber();
+        // Keep integral and floating values apart, so "2" and "2.0" round-trip as written
+        if (number instanceof Integer || number instanceof Long || number instanceof Short
+            || number instanceof Byte || number instanceof BigInteger && ((BigInteger) number).bitLength() < 64) {
+          payloadOut.writeByte(LONG);
+          writeVarLong(payloadOut, zigZag(number.longValue()));
+        } else {
+          payloadOut.writeByte(DOUBLE);
+          payloadOut.writeDouble(number.doubleValue());
+        }
+      } else {
+        payloadOut.writeByte(STRING_REF);
+        writeVarInt(payloadOut, ref(primitive.getAsString()));
+      }
+    }
+
+    private int ref(String value) {
+      Integer id = strings.get(value);
+      if (id == null) {
+        id = strings.size();
+        strings.put(value, id);
+        pending.add(value);
+      }
+      return id;
+    }
+
+    // New strings are defined right before the record that first references them
+    private void flushStrings() throws IOException {
+      for (String value : pending) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(STRING);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+      }
+      pending.clear();
+    }
+
+    private void writeRecord(byte type) throws IOException {
+      out.writeByte(type);
+      writeVarInt(out, payload.size());
+      payload.writeTo(out);
+    }
+  }
+
+  /**
+   * Streams a binary report into a JSON writer. Only the string table and one entry at a time
+   * are kept in memory.
+   */
+  static void toJson(InputStream input, JsonWriter json) throws IOException {
+    Gson gson = new Gson();
+    Reader reader = new Reader(input);
+    json.beginObject();
+    for (String section = reader.nextSection(); section != null; section = reader.nextSection()) {
+      json.name(section).beginArray();
+      for (JsonElement entry = reader.nextEntry(); entry != null; entry = reader.nextEntry()) {
+        gson.toJson(entry, json);
+      }
+      json.endArray();
+    }
+    json.endObject();
+  }
+
+  /** Reads a binary report section by section; entries of skipped sections are never decoded. */
+  static final class Reader {
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private int length;
+
+    Reader(InputStream input) throws IOException {
+      this.in = new DataInputStream(input);
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a binary test retry report");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported binary report version " + version);
+      }
+    }
+
+    /** Moves to the next section, skipping what is left of the current one; null at the end. */
+    String nextSection() throws IOException {
+      while (true) {
+        int type = nextRecord();
+        if (type < 0) {
+          return null;
+        }
+        if (type == SECTION_BEGIN) {
+          return string(readVarInt(in));
+        }
+        skip(length);
+      }
+    }
+
+    /** The next entry of the current section, or null once the section ends. */
+    JsonElement nextEntry() throws IOException {
+      while (true) {
+        int type = nextRecord();
+        if (type < 0 || type == SECTION_END) {
+          return null;
+        }
+        if (type == ENTRY) {
+          return readValue();
+        }
+        if (type == SECTION_BEGIN) {
+          throw new IOException("Corrupt binary report: section begins inside a section");
+        }
+        skip(length);
+      }
+    }
+
+    // Reads record headers, consuming string definitions; returns the type or -1 at the end
+    private int nextRecord() throws IOException {
+      while (true) {
+        int type = in.read();
+        if (type < 0) {
+          return -1;
+        }
+        length = readVarInt(in);
+        if (type != STRING) {
+          return type;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        strings.add(new String(bytes, StandardCharsets.UTF_8));
+      }
+    }
+
+    private JsonElement readValue() throws IOException {
+      byte tag = in.readByte();
+      switch (tag) {
+        case NULL:
+          return JsonNull.INSTANCE;
+        case FALSE:
+          return new JsonPrimitive(false);
+        case TRUE:
+          return new JsonPrimitive(true);
+        case LONG:
+          return new JsonPrimitive(unZigZag(readVarLong(in)));
+        case DOUBLE:
+          return new JsonPrimitive(in.readDouble());
+        case STRING_REF:
+          return new JsonPrimitive(string(readVarInt(in)));
+        case ARRAY:
+          JsonArray array = new JsonArray();
+          for (int i = readVarInt(in); i > 0; i--) {
+            array.add(readValue());
+          }
+          return array;
+        case OBJECT:
+          JsonObject object = new JsonObject();
+          for (int i = readVarInt(in); i > 0; i--) {
+            String name = string(readVarInt(in));
+            object.add(name, readValue());
+          }
+          return object;
+        default:
+          throw new IOException("Corrupt binary report: unknown value tag " + tag);
+      }
+    }
+
+    private String string(int id) throws IOException {
+      if (id < 0 || id >= strings.size()) {
+        throw new IOException("Corrupt binary report: undefined string " + id);
+      }
+      return strings.get(id);
+    }
+
+    private void skip(int bytes) throws IOException {
+      int remaining = bytes;
+      while (remaining > 0) {
+        int skipped = in.skipBytes(remaining);
+        if (skipped <= 0) {
+          in.readByte();
+          skipped = 1;
+        }
+        remaining -= skipped;
+      }
+    }
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    writeVarLong(out, value & 0xffffffffL);
+  }
+
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.writeByte((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    long value = readVarLong(in);
+    if (value > Integer.MAX_VALUE) {
+      throw new IOException("Corrupt binary report: length out of range");
+    }
+    return (int) value;
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException("Truncated binary report");
+      }
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Corrupt binary report: varint too long");
+  }
+}
@@ -0,0 +1,327 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Attempt;
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntSupplier;
+
+/**
+ * Tracker for tests that have only passed so far, kept in primitive arrays instead of a
+ * {@link Data} per test. A green test costs one row of parallel arrays and a table slot, about a
+ * fifth of a Data with its snapshot, attempt ring and map node. Recent attempts and GC overlap
+ * are not kept for such tests; the report only shows them for flaky tests.
+ *
+ * <p>The first failure promotes a test: {@link #promote} hands its totals to a new Data that
+ * takes over from then on, and the row is only kept so that the test is not tracked twice.
+ *
+ * <p>Rows are spread over stripes by the hash of the unique id. Each stripe is an open-addressing
+ * table of row numbers, locked on its own, so parallel test threads rarely meet on one lock.
+ * Keys are the unique id strings JUnit hands out, one instance per test, so a lookup usually
+ * matches by reference before it compares characters.
+ */
+final class CompactTracker {
+
+  private static final int STRIPES = 64;
+  private static final byte DIRTY = 1;
+  private static final byte PROMOTED = 2;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final IntSupplier nextId;
+
+  /** {@code nextId} hands out the dense test ids, shared with the tests tracked as Data. */
+  CompactTracker(IntSupplier nextId) {
+    this.nextId = nextId;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /** Receives the tests that passed since the previous drain. */
+  interface ChangeVisitor {
+    void changed(int id, String uniqueId, int count, int newPasses, long totalWallNanos, long totalAllocatedBytes);
+  }
+
+  /**
+   * Records a passed attempt; {@code attempt} is null if it was not timed.
+   *
+   * @return the number of attempts of the test, including this one
+   */
+  int recordPassed(String uniqueId, String className, Attempt attempt) {
+    int hash = spread(uniqueId.hashCode());
+    Stripe stripe = stripeFor(hash);
+    synchronized (stripe) {
+      int row = stripe.find(uniqueId, hash);
+      if (row < 0) {
+        row = stripe.add(uniqueId, hash, className, nextId.getAsInt());
+      }
+      stripe.counts[row]++;
+      if (attempt != null) {
+        stripe.wallNanos[row] += attempt.getWallNanos();
+        stripe.cpuNanos[row] += Math.max(0, attempt.getCpuNanos());
+        stripe.maxWallNanos[row] = Math.max(stripe.maxWallNanos[row], attempt.getWallNanos());
+        stripe.allocatedBytes[row] += Math.max(0, attempt.getAllocatedBytes());
+      }
+      stripe.markDirty(row);
+      return stripe.counts[row];
+    }
+  }
+
+  /** Attempts recorded for a test, or 0 if it is not tracked here. */
+  int getCount(String uniqueId) {
+    int hash = spread(uniqueId.hashCode());
+    Stripe stripe = stripeFor(hash);
+    synchronized (stripe) {
+      int row = stripe.find(uniqueId, hash);
+      return row < 0 ? 0 : stripe.counts[row];
+    }
+  }
+
+  /**
+   * Moves a test to a full Data with the same id and totals, or returns null if it never
+   * passed here. Called once per test, by {@link DataStore} while it registers the Data.
+   */
+  Data promote(String uniqueId) {
+    int hash = spread(uniqueId.hashCode());
+    Stripe stripe = stripeFor(hash);
+    synchronized (stripe) {
+      int row = stripe.find(uniqueId, hash);
+      if (row < 0 || (stripe.flags[row] & PROMOTED) != 0) {
+        return null;
+      }
+      stripe.flags[row] |= PROMOTED;
+      return stripe.toData(row);
+    }
+  }
+
+  /** Current state of a test as a detached Data, or null if it is not tracked here. */
+  Data view(String uniqueId) {
+    int hash = spread(uniqueId.hashCode());
+    Stripe stripe = stripeFor(hash);
+    synchronized (stripe) {
+      int row = stripe.find(uniqueId, hash);
+      return row < 0 ? null : stripe.toData(row);
+    }
+  }
+
+  /** Number of tests that passed since the previous drain. */
+  int dirtyCount() {
+    int count = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        count += stripe.dirtyCount;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Visits and clears the tests that passed since the previous drain, one stripe at a time.
+   * Their passes count as recorded in the history from then on. The visitor runs outside the
+   * stripe lock, on a copy of the stripe's dirty rows, so test threads keep recording meanwhile.
+   */
+  void drainDirty(ChangeVisitor visitor) {
+    Drained drained = new Drained();
+    for (Stripe stripe : stripes) {
+      drained.size = 0;
+      synchronized (stripe) {
+        for (int i = 0; i < stripe.dirtyCount; i++) {
+          int row = stripe.dirty[i];
+          stripe.flags[row] &= ~DIRTY;
+          if ((stripe.flags[row] & PROMOTED) != 0) {
+            continue;
+          }
+          drained.add(stripe.ids[row], stripe.keys[row], stripe.counts[row], stripe.counts[row] - stripe.recorded[row],
+              stripe.wallNanos[row], stripe.allocatedBytes[row]);
+          stripe.recorded[row] = stripe.counts[row];
+        }
+        stripe.dirtyCount = 0;
+        if (stripe.dirty.length > 64) {
+          stripe.dirty = new int[64];
+        }
+      }
+      for (int i = 0; i < drained.size; i++) {
+        visitor.changed(drained.ids[i], drained.keys[i], drained.counts[i], drained.newPasses[i],
+            drained.wallNanos[i], drained.allocatedBytes[i]);
+      }
+    }
+  }
+
+  /** Every test not promoted yet, each as a detached Data built when the iterator reaches it. */
+  Iterable<Data> views() {
+    return () -> new Iterator<Data>() {
+      private int stripe;
+      private int row;
+      private Data next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Data next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        Data current = next;
+        next = advance();
+        return current;
+      }
+
+      private Data advance() {
+        for (; stripe < STRIPES; stripe++, row = 0) {
+          Stripe current = stripes[stripe];
+          synchronized (current) {
+            while (row < current.size) {
+              int candidate = row++;
+              if ((current.flags[candidate] & PROMOTED) == 0) {
+                return current.toData(candidate);
+              }
+            }
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  private Stripe stripeFor(int hash) {
+    // High bits pick the stripe, low bits the slot in its table
+    return stripes[hash >>> 26];
+  }
+
+  private static int spread(int hash) {
+    // Slots use the low bits of the product, which only depend on the low bits of what is multiplied
+    return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+  }
+
+  /** Dirty rows of one stripe, copied out under its lock; reused from stripe to stripe. */
+  private static final class Drained {
+    private int size;
+    private int[] ids = new int[64];
+    private String[] keys = new String[64];
+    private int[] counts = new int[64];
+    private int[] newPasses = new int[64];
+    private long[] wallNanos = new long[64];
+    private long[] allocatedBytes = new long[64];
+
+    void add(int id, String key, int count, int passes, long wall, long allocated) {
+      if (size == ids.length) {
+        int capacity = size * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        newPasses = Arrays.copyOf(newPasses, capacity);
+        wallNanos = Arrays.copyOf(wallNanos, capacity);
+        allocatedBytes = Arrays.copyOf(allocatedBytes, capacity);
+      }
+      ids[size] = id;
+      keys[size] = key;
+      counts[size] = count;
+      newPasses[size] = passes;
+      wallNanos[size] = wall;
+      allocatedBytes[size] = allocated;
+      size++;
+    }
+  }
+
+  private static final class Stripe {
+
+    // Row number + 1 per slot, 0 for a free slot; at most half full
+    private int[] table = new int[16];
+    private int size;
+    // One row per test, in order of first sight
+    private String[] keys = new String[8];
+    private String[] classNames = new String[8];
+    private int[] ids = new int[8];
+    private int[] counts = new int[8];
+    // Passes already appended to the flaky history
+    private int[] recorded = new int[8];
+    private long[] wallNanos = new long[8];
+    private long[] cpuNanos = new long[8];
+    private long[] maxWallNanos = new long[8];
+    private long[] allocatedBytes = new long[8];
+    private byte[] flags = new byte[8];
+    // Rows with the DIRTY flag, in the order they were marked
+    private int[] dirty = new int[8];
+    private int dirtyCount;
+
+    int find(String key, int hash) {
+      int mask = table.length - 1;
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        int entry = table[slot];
+        if (entry == 0) {
+          return -1;
+        }
+        String candidate = keys[entry - 1];
+        if (candidate == key || candidate.equals(key)) {
+          return entry - 1;
+        }
+      }
+    }
+
+    int add(String key, int hash, String className, int id) {
+      if (size == keys.length) {
+        growRows(size + (size >> 1));
+      }
+      if ((size + 1) * 2 > table.length) {
+        growTable();
+      }
+      int row = size++;
+      keys[row] = key;
+      classNames[row] = className;
+      ids[row] = id;
+      insert(row, hash);
+      return row;
+    }
+
+    void markDirty(int row) {
+      if ((flags[row] & DIRTY) != 0) {
+        return;
+      }
+      flags[row] |= DIRTY;
+      if (dirtyCount == dirty.length) {
+        dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+      }
+      dirty[dirtyCount++] = row;
+    }
+
+    Data toData(int row) {
+      Data.Snapshot state = Data.Snapshot.restored(counts[row], 0, "PASSED", wallNanos[row], cpuNanos[row],
+          maxWallNanos[row], allocatedBytes[row], 0, 0, Collections.emptyList());
+      return new Data(ids[row], keys[row], classNames[row], state, recorded[row]);
+    }
+
+    private void insert(int row, int hash) {
+      int mask = table.length - 1;
+      int slot = hash & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = row + 1;
+    }
+
+    private void growRows(int capacity) {
+      keys = Arrays.copyOf(keys, capacity);
+      classNames = Arrays.copyOf(classNames, capacity);
+      ids = Arrays.copyOf(ids, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+      recorded = Arrays.copyOf(recorded, capacity);
+      wallNanos = Arrays.copyOf(wallNanos, capacity);
+      cpuNanos = Arrays.copyOf(cpuNanos, capacity);
+      maxWallNanos = Arrays.copyOf(maxWallNanos, capacity);
+      allocatedBytes = Arrays.copyOf(allocatedBytes, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+    }
+
+    private void growTable() {
+      table = new int[table.length * 2];
+      for (int row = 0; row < size; row++) {
+        insert(row, spread(keys[row].hashCode()));
+      }
+    }
+  }
+}
@@ -1,16 +1,241 @@
 package com.example.ecommerce;
 
 import com.example.ecommerce.MyTestWatcher.Data;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public enum DataStore {
   instance;
+  // Keyed by JUnit unique id; every test also gets a dense numeric id on first sight
   private final Map<String, Data> tracker = new ConcurrentHashMap<>();
+  private final AtomicInteger nextTestId = new AtomicInteger();
+  private final AtomicInteger nextRound = new AtomicInteger();
+  private volatile Data[] testsById = new Data[1024];
+  // Green tests when the compact tracker is enabled; the tracker map then only holds tests that failed
+  private volatile CompactTracker compact;
+  // Attempts that have started but not reported an outcome yet, keyed by unique id
+  private final Map<String, AttemptClock> inFlight = new ConcurrentHashMap<>();
+  private final FailureCatalog failureCatalog = new FailureCatalog();
+  private final TrackerIndex index = new TrackerIndex();
+  private final DurationRegressions regressions = new DurationRegressions();
+  private final OverlapIndex overlaps = new OverlapIndex();
+  private final FixtureTimings fixtures = new FixtureTimings();
+  // Tests with a flake estimate from repeated runs
+  private final Set<Data> estimatedTests = ConcurrentHashMap.newKeySet();
+  private final AllocationMeter allocationMeter = new AllocationMeter();
+  private final GcMonitor gcMonitor = new GcMonitor(inFlight);
+  private final StallWatchdog watchdog = new StallWatchdog(inFlight);
+  private final TestMetrics metrics = new TestMetrics(inFlight);
+  private final MetricsEndpoint metricsEndpoint = new MetricsEndpoint(metrics);
+  private volatile WatcherConfig config = WatcherConfig.defaults();
+  private volatile FlakyHistoryStore history;
+  private volatile TraceRecorder trace;
+  private final ReportSink reports = new ReportSink();
+
+  DataStore() {
+    // One hook, so pending reports are written before the history they append to is checkpointed
+    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "junit5-watcher-shutdown"));
+  }
 
   public Map<String, Data> getTracker() {
     return tracker;
   }
 
+  /** Tracker of tests that only passed so far, or null when disabled. */
+  CompactTracker getCompactTracker() {
+    return compact;
+  }
+
+  /** Every test: the tracker map, then the compact tracker's tests as detached entries. */
+  Iterable<Data> getTests() {
+    CompactTracker compactTracker = compact;
+    if (compactTracker == null) {
+      return tracker.values();
+    }
+    return () -> Stream.concat(tracker.values().stream(),
+        StreamSupport.stream(compactTracker.views().spliterator(), false)).iterator();
+  }
+
+  /**
+   * Returns the entry for a unique id, creating it on the first event of the test. The common
+   * path is a single hash lookup on the (cached) unique id string.
+   */
+  Data register(String uniqueId, Class<?> testClass) {
+    Data data = tracker.get(uniqueId);
+    if (data != null) {
+      return data;
+    }
+    return tracker.computeIfAbsent(uniqueId, key -> {
+      // A test that passed before in the compact tracker keeps its id and totals
+      CompactTracker compactTracker = compact;
+      Data created = compactTracker != null ? compactTracker.promote(key) : null;
+      if (created == null) {
+        created = new Data(nextTestId.getAndIncrement(), key, className(testClass));
+      }
+      publish(created);
+      return created;
+    });
+  }
+
+  static String className(Class<?> testClass) {
+    return testClass != null ? testClass.getName() : "UnknownClass";
+  }
+
+  /** Entry for a numeric test id, or null if no test has that id yet. */
+  Data getTest(int id) {
+    Data[] tests = testsById;
+    return id >= 0 && id < tests.length ? tests[id] : null;
+  }
+
+  private synchronized void publish(Data data) {
+    Data[] tests = testsById;
+    if (data.getId() >= tests.length) {
+      tests = Arrays.copyOf(tests, Math.max(tests.length * 2, data.getId() + 1));
+    }
+    tests[data.getId()] = data;
+    testsById = tests;
+  }
+
+  /** Number of the test plan that starts now; 0 for the first, then one per Surefire rerun. */
+  int nextRound() {
+    return nextRound.getAndIncrement();
+  }
+
+  Map<String, AttemptClock> getInFlight() {
+    return inFlight;
+  }
+
+  public FailureCatalog getFailureCatalog() {
+    return failureCatalog;
+  }
+
+  TrackerIndex getIndex() {
+    return index;
+  }
+
+  DurationRegressions getRegressions() {
+    return regressions;
+  }
+
+  OverlapIndex getOverlaps() {
+    return overlaps;
+  }
+
+  FixtureTimings getFixtures() {
+    return fixtures;
+  }
+
+  Set<Data> getEstimatedTests() {
+    return estimatedTests;
+  }
+
+  public WatcherConfig getConfig() {
+    return config;
+  }
+
+  void setConfig(WatcherConfig config) {
+    this.config = config;
+    if (allocationMeter.isEnabled() != config.isAllocationTracking()) {
+      allocationMeter.setEnabled(config.isAllocationTracking());
+    }
+    gcMonitor.setEnabled(config.isGcAttribution());
+    // Only ever switched on: green tests already in it would be lost otherwise
+    if (config.isCompactTracker() && compact == null) {
+      synchronized (this) {
+        if (compact == null) {
+          compact = new CompactTracker(nextTestId::getAndIncrement);
+        }
+      }
+    }
+  }
+
+  GcMonitor getGcMonitor() {
+    return gcMonitor;
+  }
+
+  TestMetrics getMetrics() {
+    return metrics;
+  }
+
+  MetricsEndpoint getMetricsEndpoint() {
+    return metricsEndpoint;
+  }
+
+  StallWatchdog getWatchdog() {
+    return watchdog;
+  }
 
+  AllocationMeter getAllocationMeter() {
+    return allocationMeter;
+  }
+
+  /** Cross-build history, or null when disabled or unavailable. */
+  public FlakyHistoryStore getHistory() {
+    return history;
+  }
+
+  synchronized void openHistory(Path directory, int maxAgeDays) {
+    if (history != null) {
+      return;
+    }
+    try {
+      history = FlakyHistoryStore.open(directory, 16L * 1024 * 1024, 64, TimeUnit.DAYS.toMillis(maxAgeDays));
+      overlaps.load(directory);
+    } catch (IOException e) {
+      System.err.println("Flaky test history disabled, cannot open " + directory + ": " + e.getMessage());
+    }
+  }
+
+  /** Execution trace, or null when disabled or unavailable. */
+  TraceRecorder getTrace() {
+    return trace;
+  }
+
+  synchronized void openTrace(Path file) {
+    if (trace != null) {
+      return;
+    }
+    try {
+      trace = TraceRecorder.open(file);
+    } catch (IOException e) {
+      System.err.println("Test execution trace disabled, cannot open " + file + ": " + e.getMessage());
+    }
+  }
+
+  /** Background writer for reports and console output. */
+  ReportSink getReports() {
+    return reports;
+  }
+
+  private void shutdown() {
+    reports.close();
+    metricsEndpoint.stop();
+    TraceRecorder recorder = trace;
+    if (recorder != null) {
+      recorder.close();
+    }
+    FlakyHistoryStore store = history;
+    if (store == null) {
+      return;
+    }
+    try {
+      overlaps.save(store.getDirectory());
+    } catch (IOException e) {
+      System.err.println("Failed to save test overlap history: " + e.getMessage());
+    }
+    // Checkpoint once per JVM; a killed fork is recovered by replaying its segment tail
+    try {
+      store.close();
+    } catch (IOException e) {
+      System.err.println("Failed to checkpoint flaky test history: " + e.getMessage());
+    }
+  }
 }
@@ -0,0 +1,168 @@
+package com.example.ecommerce;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests whose passed attempts in this build are much slower than their duration baseline in
+ * the {@link FlakyHistoryStore}.
+ *
+ * <p>The check works on log durations, where "twice as slow" is the same distance for every
+ * test. The baseline's median and median absolute deviation stand in for mean and standard
+ * deviation, so a few slow builds in the history neither hide a regression nor raise false
+ * alarms. The median of this build's attempts gets a one-sided p-value from its robust z-score.
+ * A test is only listed if the p-value is small and the slowdown is large, both in ratio and in
+ * milliseconds, since thousands of tests are compared in every build.
+ */
+final class DurationRegressions {
+
+  // Fewer baseline durations than this give no reliable spread
+  static final double MIN_BASELINE_WEIGHT = 5;
+  // Scale of a normal distribution's MAD; makes the MAD comparable to a standard deviation
+  private static final double MAD_TO_SIGMA = 1.4826;
+  // Run-to-run noise floor of 5%, so a perfectly steady baseline does not flag every jitter
+  private static final double MIN_LOG_SIGMA = Math.log(1.05);
+
+  private final Map<Integer, Regression> regressions = new HashMap<>();
+
+  /** Re-checks a test that ran since the previous update; {@code regression} is null if it is fine. */
+  synchronized void update(int id, Regression regression) {
+    if (regression != null) {
+      regressions.put(id, regression);
+    } else {
+      regressions.remove(id);
+    }
+  }
+
+  /** Current regressions, most significant first. */
+  synchronized List<Regression> getRegressions() {
+    List<Regression> sorted = new ArrayList<>(regressions.values());
+    sorted.sort(Comparator.comparingDouble(Regression::getPValue)
+        .thenComparing(Comparator.comparingDouble(Regression::getRatio).reversed()));
+    return sorted;
+  }
+
+  /**
+   * Compares a test's passed attempts of this build against its baseline.
+   *
+   * @return the regression, or null if there is none or too little data to tell
+   */
+  static Regression check(String testName, long[] wallNanos, DurationSketch baseline, WatcherConfig config) {
+    if (wallNanos.length == 0 || baseline == null || baseline.weight() < MIN_BASELINE_WEIGHT) {
+      return null;
+    }
+    long current = median(wallNanos);
+    double logMedian = baseline.logQuantile(0.5);
+    double baselineNanos = Math.exp(logMedian);
+    double ratio = current / baselineNanos;
+    if (ratio < config.getRegressionMinRatio()
+        || MyTestWatcher.toMillis(current) - baselineNanos / 1e6 < config.getRegressionMinDeltaMs()) {
+      return null;
+    }
+    double sigma = Math.max(MIN_LOG_SIGMA, MAD_TO_SIGMA * baseline.logMad(logMedian));
+    double z = (Math.log(current) - logMedian) / sigma;
+    double pValue = upperTail(z);
+    if (pValue > config.getRegressionMaxPValue()) {
+      return null;
+    }
+    return new Regression(testName, wallNanos.length, current, baselineNanos,
+        Math.exp(baseline.logQuantile(0.9)), baseline.weight(), ratio, z, pValue);
+  }
+
+  /** Wall-clock times of the passed attempts in the test's ring of recent attempts. */
+  static long[] passedWallNanos(MyTestWatcher.Data.Snapshot state) {
+    return state.getAttempts().stream()
+        .filter(attempt -> "PASSED".equals(attempt.getStatus()))
+        .mapToLong(MyTestWatcher.Attempt::getWallNanos)
+        .toArray();
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int middle = sorted.length / 2;
+    return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+  }
+
+  /** P(Z >= z) of the standard normal distribution. */
+  static double upperTail(double z) {
+    return 0.5 * erfc(z / Math.sqrt(2));
+  }
+
+  private static double erfc(double x) {
+    // Chebyshev fit from Numerical Recipes (erfcc), fractional error below 1.2e-7 everywhere
+    double t = 1 / (1 + 0.5 * Math.abs(x));
+    double result = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+        + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+        + t * (-0.82215223 + t * 0.17087277)))))))));
+    return x >= 0 ? result : 2 - result;
+  }
+
+  // DTO class for JSON serialization
+  static class Regression {
+    private final String testName;
+    private final int attempts;
+    private final double wallTimeMs;
+    private final double baselineMedianMs;
+    private final double baselineP90Ms;
+    private final double baselineWeight;
+    private final double ratio;
+    private final double zScore;
+    private final double pValue;
+
+    public Regression(String testName, int attempts, long wallNanos, double baselineMedianNanos,
+        double baselineP90Nanos, double baselineWeight, double ratio, double zScore, double pValue) {
+      this.testName = testName;
+      this.attempts = attempts;
+      this.wallTimeMs = MyTestWatcher.toMillis(wallNanos);
+      this.baselineMedianMs = baselineMedianNanos / 1e6;
+      this.baselineP90Ms = baselineP90Nanos / 1e6;
+      this.baselineWeight = baselineWeight;
+      this.ratio = ratio;
+      this.zScore = zScore;
+      this.pValue = pValue;
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    public int getAttempts() {
+      return attempts;
+    }
+
+    /** Median wall-clock time of the passed attempts in this build. */
+    public double getWallTimeMs() {
+      return wallTimeMs;
+    }
+
+    public double getBaselineMedianMs() {
+      return baselineMedianMs;
+    }
+
+    public double getBaselineP90Ms() {
+      return baselineP90Ms;
+    }
+
+    /** Durations behind the baseline, older builds counting less. */
+    public double getBaselineWeight() {
+      return baselineWeight;
+    }
+
+    public double getRatio() {
+      return ratio;
+    }
+
+    public double getZScore() {
+      return zScore;
+    }
+
+    public double getPValue() {
+      return pValue;
+    }
+  }
+}
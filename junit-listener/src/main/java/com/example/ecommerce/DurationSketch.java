@@ -0,0 +1,166 @@
+package com.example.ecommerce;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable histogram of test durations with relative accuracy. A duration lands in bucket
+ * {@code ceil(log(nanos) / log(gamma))}, so every bucket spans the same ratio and any quantile
+ * is within {@value #ACCURACY} of the true value, for a 1 ms test as for a 1 min test. Two
+ * sketches merge by adding bucket weights, so forks and modules can each record their own.
+ *
+ * <p>Weights are floats so that older builds can fade out with {@link #scale}. Only occupied
+ * buckets are stored, at most {@value #MAX_BUCKETS} of them; beyond that the lowest two are folded
+ * together, which only blurs the fast tail that a regression check does not look at. With 4%
+ * wide buckets that is a range of about 165x, e.g. from a warm 5 ms run to a cold 800 ms one, at
+ * full accuracy; a test whose durations span more loses accuracy at the fast end first. A typical
+ * test occupies a few dozen buckets, 6 bytes each on disk. Not thread-safe.
+ */
+final class DurationSketch {
+
+  static final double ACCURACY = 0.02;
+  static final int MAX_BUCKETS = 128;
+
+  private static final double GAMMA = (1 + ACCURACY) / (1 - ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  // Buckets that faded below this are dropped
+  private static final float MIN_WEIGHT = 1e-3f;
+
+  // Bucket indexes in ascending order, with their weights
+  private int[] indexes = new int[4];
+  private float[] weights = new float[4];
+  private int size;
+
+  void add(long nanos, double weight) {
+    addBucket(index(nanos), (float) weight);
+  }
+
+  void merge(DurationSketch other) {
+    for (int i = 0; i < other.size; i++) {
+      addBucket(other.indexes[i], other.weights[i]);
+    }
+  }
+
+  /** Multiplies every weight by {@code factor}. */
+  void scale(double factor) {
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      float weight = (float) (weights[i] * factor);
+      if (weight >= MIN_WEIGHT) {
+        indexes[kept] = indexes[i];
+        weights[kept++] = weight;
+      }
+    }
+    size = kept;
+  }
+
+  DurationSketch copy() {
+    DurationSketch copy = new DurationSketch();
+    copy.indexes = Arrays.copyOf(indexes, Math.max(size, 1));
+    copy.weights = Arrays.copyOf(weights, Math.max(size, 1));
+    copy.size = size;
+    return copy;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Sum of the weights; the number of durations added, less what has faded. */
+  double weight() {
+    double total = 0;
+    for (int i = 0; i < size; i++) {
+      total += weights[i];
+    }
+    return total;
+  }
+
+  /** Natural log of the {@code q} quantile in nanoseconds; NaN when empty. */
+  double logQuantile(double q) {
+    if (size == 0) {
+      return Double.NaN;
+    }
+    double rank = q * weight();
+    double cumulative = 0;
+    for (int i = 0; i < size; i++) {
+      cumulative += weights[i];
+      if (cumulative >= rank) {
+        return logValue(indexes[i]);
+      }
+    }
+    return logValue(indexes[size - 1]);
+  }
+
+  /**
+   * Median absolute deviation of the log durations from {@code logMedian}, a spread that a few
+   * outlier builds cannot inflate.
+   */
+  double logMad(double logMedian) {
+    double[][] deviations = new double[size][];
+    for (int i = 0; i < size; i++) {
+      deviations[i] = new double[] {Math.abs(logValue(indexes[i]) - logMedian), weights[i]};
+    }
+    Arrays.sort(deviations, (a, b) -> Double.compare(a[0], b[0]));
+    double half = weight() / 2;
+    double cumulative = 0;
+    for (double[] deviation : deviations) {
+      cumulative += deviation[1];
+      if (cumulative >= half) {
+        return deviation[0];
+      }
+    }
+    return 0;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeShort(size);
+    for (int i = 0; i < size; i++) {
+      out.writeShort(indexes[i]);
+      out.writeFloat(weights[i]);
+    }
+  }
+
+  static DurationSketch read(DataInput in) throws IOException {
+    DurationSketch sketch = new DurationSketch();
+    int buckets = in.readUnsignedShort();
+    for (int i = 0; i < buckets; i++) {
+      sketch.addBucket(in.readShort(), in.readFloat());
+    }
+    return sketch;
+  }
+
+  private void addBucket(int index, float weight) {
+    int position = Arrays.binarySearch(indexes, 0, size, index);
+    if (position >= 0) {
+      weights[position] += weight;
+      return;
+    }
+    position = -position - 1;
+    if (size == indexes.length) {
+      indexes = Arrays.copyOf(indexes, size * 2);
+      weights = Arrays.copyOf(weights, size * 2);
+    }
+    System.arraycopy(indexes, position, indexes, position + 1, size - position);
+    System.arraycopy(weights, position, weights, position + 1, size - position);
+    indexes[position] = index;
+    weights[position] = weight;
+    size++;
+    if (size > MAX_BUCKETS) {
+      weights[1] += weights[0];
+      System.arraycopy(indexes, 1, indexes, 0, size - 1);
+      System.arraycopy(weights, 1, weights, 0, size - 1);
+      size--;
+    }
+  }
+
+  private static int index(long nanos) {
+    return nanos <= 1 ? 0 : (int) Math.ceil(Math.log(nanos) / LOG_GAMMA);
+  }
+
+  private static double logValue(int index) {
+    // Log of the bucket's midpoint 2 * gamma^i / (gamma + 1), whose relative error is ACCURACY
+    return index * LOG_GAMMA + Math.log(2 / (1 + GAMMA));
+  }
+}
@@ -0,0 +1,136 @@
+package com.example.ecommerce;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Interns one canonical {@link FailureSnapshot} per failure fingerprint and counts how often
+ * each fingerprint occurred. A shared fixture that breaks a whole class, or a parameterized
+ * test failing for every argument, ends up as a single trace with a high count.
+ *
+ * <p>The fingerprint is the exception type plus the top frames, normalised so it stays stable
+ * across builds: line numbers, lambda and proxy suffixes are dropped and the message is ignored
+ * (messages usually carry the parameter values). Assertion library frames are skipped before
+ * counting, so the frames that tell failures apart are the test's own. Hashing stops at the
+ * first reflection frame below them; reflection frames above them, left by an exception that was
+ * constructed reflectively as AssertJ does, are skipped like assertion frames.
+ */
+public final class FailureCatalog {
+
+  static final int FINGERPRINT_FRAMES = 8;
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the canonical snapshot for the throwable, creating it only for a fingerprint that
+   * has not been seen before, and counts the occurrence.
+   */
+  public FailureSnapshot record(Throwable throwable, int maxFrames) {
+    String fingerprint = fingerprint(throwable);
+    Failure failure = failures.computeIfAbsent(fingerprint,
+        key -> new Failure(FailureSnapshot.of(throwable, maxFrames, key)));
+    failure.occurrences.increment();
+    return failure.snapshot;
+  }
+
+  /** Adds occurrences recorded elsewhere, e.g. in another fork; the first snapshot seen wins. */
+  public FailureSnapshot merge(FailureSnapshot snapshot, long occurrences) {
+    Failure failure = failures.computeIfAbsent(snapshot.getFingerprint(), key -> new Failure(snapshot));
+    failure.occurrences.add(occurrences);
+    return failure.snapshot;
+  }
+
+  public FailureSnapshot get(String fingerprint) {
+    Failure failure = failures.get(fingerprint);
+    return failure != null ? failure.snapshot : null;
+  }
+
+  public Collection<Failure> getFailures() {
+    return failures.values();
+  }
+
+  public static String fingerprint(Throwable throwable) {
+    long hash = hash(FNV_OFFSET, throwable.getClass().getName());
+    StackTraceElement[] trace = throwable.getStackTrace();
+    int frames = 0;
+    for (int i = 0; i < trace.length && frames < FINGERPRINT_FRAMES; i++) {
+      String className = trace[i].getClassName();
+      // Frames below the reflective call belong to the caller (JUnit or a retry), not the failure;
+      // above the first hashed frame they only construct the exception
+      if (isReflectionFrame(className)) {
+        if (frames > 0) {
+          break;
+        }
+        continue;
+      }
+      // assertEquals alone takes five or six frames that every assertion failure shares
+      if (isAssertionFrame(className)) {
+        continue;
+      }
+      hash = hash(hash, normalizeClass(className));
+      hash = hash(hash, normalizeMethod(trace[i].getMethodName()));
+      frames++;
+    }
+    return String.format("%016x", hash);
+  }
+
+  private static boolean isReflectionFrame(String className) {
+    return className.startsWith("jdk.internal.reflect.") || className.startsWith("sun.reflect.")
+        || className.startsWith("java.lang.reflect.") || className.startsWith("java.lang.invoke.");
+  }
+
+  private static boolean isAssertionFrame(String className) {
+    return className.startsWith("org.junit.jupiter.api.") || className.startsWith("org.opentest4j.")
+        || className.startsWith("org.assertj.");
+  }
+
+  // Generated names differ between runs: Foo$$Lambda$123/0x..., Foo$$EnhancerByMockito$$abc
+  static String normalizeClass(String className) {
+    int generated = className.indexOf("$$");
+    return generated < 0 ? className : className.substring(0, generated);
+  }
+
+  // lambda$shouldFail$3 -> lambda$shouldFail; the counter depends on declaration order
+  static String normalizeMethod(String methodName) {
+    if (methodName.startsWith("lambda$")) {
+      int counter = methodName.lastIndexOf('$');
+      if (counter > "lambda$".length()) {
+        return methodName.substring(0, counter);
+      }
+    }
+    return methodName;
+  }
+
+  private static long hash(long hash, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    // Separator so "ab"+"c" and "a"+"bc" hash differently
+    hash ^= 0xff;
+    return hash * FNV_PRIME;
+  }
+
+  public static final class Failure {
+
+    private final FailureSnapshot snapshot;
+    private final LongAdder occurrences = new LongAdder();
+
+    private Failure(FailureSnapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    public FailureSnapshot getSnapshot() {
+      return snapshot;
+    }
+
+    public long getOccurrences() {
+      return occurrences.sum();
+    }
+  }
+}
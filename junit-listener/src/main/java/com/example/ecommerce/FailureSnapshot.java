@@ -0,0 +1,122 @@
+package com.example.ecommerce;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, detached copy of a test failure. Only the exception type, message and a bounded
+ * number of frames are kept, so the failing test's object graph (assertion values, mocks,
+ * fixtures) can be collected as soon as the test finishes.
+ */
+public final class FailureSnapshot {
+
+  // Deep causal chains add little to a flaky-test report
+  private static final int MAX_CAUSES = 5;
+
+  private final String fingerprint;
+  private final String exceptionClass;
+  private final String message;
+  private final StackTraceElement[] frames;
+  private final int omittedFrames;
+  private final FailureSnapshot cause;
+  private volatile String rendered;
+
+  private FailureSnapshot(String fingerprint, String exceptionClass, String message,
+      StackTraceElement[] frames, int omittedFrames, FailureSnapshot cause) {
+    this.fingerprint = fingerprint;
+    this.exceptionClass = exceptionClass;
+    this.message = message;
+    this.frames = frames;
+    this.omittedFrames = omittedFrames;
+    this.cause = cause;
+  }
+
+  public static FailureSnapshot of(Throwable throwable, int maxFrames) {
+    return of(throwable, maxFrames, FailureCatalog.fingerprint(throwable));
+  }
+
+  static FailureSnapshot of(Throwable throwable, int maxFrames, String fingerprint) {
+    return of(throwable, maxFrames, fingerprint, 0);
+  }
+
+  /**
+   * Rebuilds a snapshot from a written report, e.g. a fork segment. Frames are not kept; the
+   * rendered trace is reused as is.
+   */
+  static FailureSnapshot restored(String fingerprint, String exceptionClass, String message, String trace) {
+    FailureSnapshot snapshot = new FailureSnapshot(fingerprint, exceptionClass, message,
+        new StackTraceElement[0], 0, null);
+    snapshot.rendered = trace;
+    return snapshot;
+  }
+
+  private static FailureSnapshot of(Throwable throwable, int maxFrames, String fingerprint, int depth) {
+    // getStackTrace is already materialised by the JVM; copy only the top frames
+    StackTraceElement[] trace = throwable.getStackTrace();
+    int kept = Math.min(trace.length, Math.max(0, maxFrames));
+    Throwable next = throwable.getCause();
+    FailureSnapshot cause = next != null && next != throwable && depth < MAX_CAUSES
+        ? of(next, maxFrames, null, depth + 1)
+        : null;
+    return new FailureSnapshot(fingerprint, throwable.getClass().getName(), throwable.getMessage(),
+        Arrays.copyOf(trace, kept), trace.length - kept, cause);
+  }
+
+  /** Fingerprint of the failure, see {@link FailureCatalog}; null for causes. */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public String getExceptionClass() {
+    return exceptionClass;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public StackTraceElement[] getFrames() {
+    return frames.clone();
+  }
+
+  public int getOmittedFrames() {
+    return omittedFrames;
+  }
+
+  public FailureSnapshot getCause() {
+    return cause;
+  }
+
+  /** Renders the snapshot in printStackTrace layout. The text is built once and cached. */
+  public String render() {
+    String text = rendered;
+    if (text == null) {
+      StringBuilder sb = new StringBuilder(256);
+      appendTo(sb, "");
+      text = sb.toString();
+      rendered = text;
+    }
+    return text;
+  }
+
+  private void appendTo(StringBuilder sb, String prefix) {
+    sb.append(prefix).append(exceptionClass);
+    if (message != null) {
+      sb.append(": ").append(message);
+    }
+    sb.append(System.lineSeparator());
+    for (StackTraceElement frame : frames) {
+      sb.append("\tat ").append(frame).append(System.lineSeparator());
+    }
+    if (omittedFrames > 0) {
+      sb.append("\t... ").append(omittedFrames).append(" more").append(System.lineSeparator());
+    }
+    if (cause != null) {
+      cause.appendTo(sb, "Caused by: ");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return render();
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.ecommerce;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+
+/**
+ * Times every lifecycle phase of a test class separately: {@code @BeforeAll}, the test
+ * instance's constructor, {@code @BeforeEach}, the test method, {@code @AfterEach} and
+ * {@code @AfterAll}. Attempt durations in the report include the per-test fixtures; the
+ * {@code fixtureCosts} section shows how much of that is setup and teardown, per class.
+ *
+ * <p>Registered before {@link RetryInterceptor}, so it wraps it and the test method phase
+ * includes retries and repeats, along with the fixtures they run again in between. Disabled
+ * with {@code junit5.watcher.fixtures.enabled=false}.
+ * Test factories are not timed: their dynamic tests run after the factory method returns.
+ */
+public class FixtureTimingInterceptor implements InvocationInterceptor {
+
+  @Override
+  public <T> T interceptTestClassConstructor(Invocation<T> invocation,
+      ReflectiveInvocationContext<Constructor<T>> invocationContext, ExtensionContext extensionContext)
+      throws Throwable {
+    return timed(invocation, extensionContext, FixtureTimings.CONSTRUCTOR);
+  }
+
+  @Override
+  public void interceptBeforeAllMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    timed(invocation, extensionContext, FixtureTimings.BEFORE_ALL);
+  }
+
+  @Override
+  public void interceptBeforeEachMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    timed(invocation, extensionContext, FixtureTimings.BEFORE_EACH);
+  }
+
+  @Override
+  public void interceptTestMethod(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+      ExtensionContext extensionContext) throws Throwable {
+    timed(invocation, extensionContext, FixtureTimings.TEST);
+  }
+
+  @Override
+  public void interceptTestTemplateMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    timed(invocation, extensionContext, FixtureTimings.TEST);
+  }
+
+  @Override
+  public void interceptAfterEachMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    timed(invocation, extensionContext, FixtureTimings.AFTER_EACH);
+  }
+
+  @Override
+  public void interceptAfterAllMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    timed(invocation, extensionContext, FixtureTimings.AFTER_ALL);
+  }
+
+  private static <T> T timed(Invocation<T> invocation, ExtensionContext extensionContext, int phase)
+      throws Throwable {
+    if (!DataStore.instance.getConfig().isFixtureTiming()) {
+      return invocation.proceed();
+    }
+    long start = System.nanoTime();
+    try {
+      return invocation.proceed();
+    } finally {
+      // Failing fixtures count too; their time is spent either way
+      DataStore.instance.getFixtures().record(DataStore.className(extensionContext.getTestClass().orElse(null)),
+          phase, System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.example.ecommerce;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent in each lifecycle phase, summed per test class. Filled by
+ * {@link FixtureTimingInterceptor}; phases are attributed to the class whose tests they run for,
+ * so a {@code @BeforeEach} inherited from a base class counts for every subclass separately.
+ */
+final class FixtureTimings {
+
+  static final int BEFORE_ALL = 0;
+  static final int CONSTRUCTOR = 1;
+  static final int BEFORE_EACH = 2;
+  static final int TEST = 3;
+  static final int AFTER_EACH = 4;
+  static final int AFTER_ALL = 5;
+  static final int PHASES = 6;
+
+  private final Map<String, Phases> classes = new ConcurrentHashMap<>();
+
+  void record(String className, int phase, long nanos) {
+    Phases phases = classes.get(className);
+    if (phases == null) {
+      phases = classes.computeIfAbsent(className, key -> new Phases());
+    }
+    phases.nanos[phase].add(nanos);
+    phases.calls[phase].increment();
+  }
+
+  /** Adds totals of another JVM, e.g. from a fork's segment. */
+  void add(String className, long[] nanos, long[] calls) {
+    Phases phases = classes.computeIfAbsent(className, key -> new Phases());
+    for (int phase = 0; phase < PHASES; phase++) {
+      phases.nanos[phase].add(nanos[phase]);
+      phases.calls[phase].add(calls[phase]);
+    }
+  }
+
+  boolean isEmpty() {
+    return classes.isEmpty();
+  }
+
+  /** Raw totals per class, as {nanos, calls} per phase. */
+  Map<String, long[][]> totals() {
+    Map<String, long[][]> totals = new ConcurrentHashMap<>();
+    for (Map.Entry<String, Phases> entry : classes.entrySet()) {
+      totals.put(entry.getKey(), entry.getValue().sum());
+    }
+    return totals;
+  }
+
+  /** Classes with any fixture time, most expensive fixtures first. */
+  List<ClassFixtures> getClassFixtures() {
+    List<ClassFixtures> result = new ArrayList<>();
+    for (Map.Entry<String, long[][]> entry : totals().entrySet()) {
+      ClassFixtures fixtures = new ClassFixtures(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+      if (fixtures.fixtureNanos > 0) {
+        result.add(fixtures);
+      }
+    }
+    result.sort(Comparator.comparingDouble(ClassFixtures::getFixtureMs).reversed()
+        .thenComparing(ClassFixtures::getClassName));
+    return result;
+  }
+
+  private static final class Phases {
+    private final LongAdder[] nanos = new LongAdder[PHASES];
+    private final LongAdder[] calls = new LongAdder[PHASES];
+
+    Phases() {
+      for (int phase = 0; phase < PHASES; phase++) {
+        nanos[phase] = new LongAdder();
+        calls[phase] = new LongAdder();
+      }
+    }
+
+    long[][] sum() {
+      long[][] sum = new long[2][PHASES];
+      for (int phase = 0; phase < PHASES; phase++) {
+        sum[0][phase] = nanos[phase].sum();
+        sum[1][phase] = calls[phase].sum();
+      }
+      return sum;
+    }
+  }
+
+  // DTO class for JSON serialization
+  static class ClassFixtures {
+    private final String className;
+    private final long tests;
+    private final double beforeAllMs;
+    private final double constructorMs;
+    private final double beforeEachMs;
+    private final double testMs;
+    private final double afterEachMs;
+    private final double afterAllMs;
+    private final transient long fixtureNanos;
+    private final double fixtureMs;
+    private final double fixtureShare;
+    private final double savingIfSharedMs;
+
+    ClassFixtures(String className, long[] nanos, long[] calls) {
+      this.className = className;
+      this.tests = calls[TEST];
+      this.beforeAllMs = MyTestWatcher.toMillis(nanos[BEFORE_ALL]);
+      this.constructorMs = MyTestWatcher.toMillis(nanos[CONSTRUCTOR]);
+      this.beforeEachMs = MyTestWatcher.toMillis(nanos[BEFORE_EACH]);
+      this.testMs = MyTestWatcher.toMillis(nanos[TEST]);
+      this.afterEachMs = MyTestWatcher.toMillis(nanos[AFTER_EACH]);
+      this.afterAllMs = MyTestWatcher.toMillis(nanos[AFTER_ALL]);
+      long perTestNanos = nanos[CONSTRUCTOR] + nanos[BEFORE_EACH] + nanos[AFTER_EACH];
+      this.fixtureNanos = perTestNanos + nanos[BEFORE_ALL] + nanos[AFTER_ALL];
+      this.fixtureMs = MyTestWatcher.toMillis(fixtureNanos);
+      long total = fixtureNanos + nanos[TEST];
+      this.fixtureShare = total > 0 ? fixtureNanos / (double) total : 0;
+      // Per-test fixtures run once per class instead of once per test
+      this.savingIfSharedMs = tests > 1 ? MyTestWatcher.toMillis(perTestNanos - perTestNanos / tests) : 0;
+    }
+
+    public String getClassName() {
+      return className;
+    }
+
+    /** Test method invocations, including repeated and parameterized ones. */
+    public long getTests() {
+      return tests;
+    }
+
+    public double getBeforeAllMs() {
+      return beforeAllMs;
+    }
+
+    /** Test instance creation, once per test with the default per-method lifecycle. */
+    public double getConstructorMs() {
+      return constructorMs;
+    }
+
+    public double getBeforeEachMs() {
+      return beforeEachMs;
+    }
+
+    public double getTestMs() {
+      return testMs;
+    }
+
+    public double getAfterEachMs() {
+      return afterEachMs;
+    }
+
+    public double getAfterAllMs() {
+      return afterAllMs;
+    }
+
+    /** Everything but the test methods themselves. */
+    public double getFixtureMs() {
+      return fixtureMs;
+    }
+
+    /** Fixture time as a share of the class's total time. */
+    public double getFixtureShare() {
+      return fixtureShare;
+    }
+
+    /** Per-test fixture time (constructor, before and after each) less one test's share. */
+    public double getSavingIfSharedMs() {
+      return savingIfSharedMs;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.example.ecommerce;
+
+/**
+ * Failure probability of a test, estimated from repeated runs by {@link RetryInterceptor}.
+ *
+ * <p>The interval is a Wilson score interval, which stays inside [0, 1] and is usable with no
+ * failures at all. Repeats stop as soon as it is narrow enough, so the interval is looked at
+ * more than once; each look spends a share of the error. Looks happen after
+ * {@value #FIRST_LOOK} runs and then at every doubling, and the k-th look uses level
+ * {@code 1 - (1 - confidence) / 2^k}. The chance that any interval along the way misses the
+ * true probability is then at most {@code 1 - confidence}. In exchange the interval at 128 runs
+ * is about 1.6 times as wide as one from a fixed number of runs decided up front.
+ */
+final class FlakeEstimate {
+
+  // Runs before the first look, then doubled for every further look
+  static final int FIRST_LOOK = 8;
+  // An interval above this means the test fails more often than not; no need to narrow it
+  private static final double BROKEN_RATE = 0.5;
+
+  private final String testName;
+  private final int runs;
+  private final int failures;
+  private final int looks;
+  private final double confidence;
+  private final double precision;
+  private final double flakeRate;
+  private final double lowerBound;
+  private final double upperBound;
+  private final String verdict;
+
+  FlakeEstimate(String testName, int runs, int failures, int looks, double confidence, double precision) {
+    this.testName = testName;
+    this.runs = runs;
+    this.failures = failures;
+    this.looks = looks;
+    this.confidence = confidence;
+    this.precision = precision;
+    double z = zScore((1 - confidence) / Math.pow(2, looks));
+    double rate = runs == 0 ? 0 : failures / (double) runs;
+    double z2n = runs == 0 ? 0 : z * z / runs;
+    double center = runs == 0 ? 0.5 : (rate + z2n / 2) / (1 + z2n);
+    double halfWidth = runs == 0 ? 0.5 : z / (1 + z2n) * Math.sqrt(rate * (1 - rate) / runs + z2n / (4 * runs));
+    this.flakeRate = rate;
+    this.lowerBound = Math.max(0, center - halfWidth);
+    this.upperBound = Math.min(1, center + halfWidth);
+    if (lowerBound > BROKEN_RATE) {
+      this.verdict = "BROKEN";
+    } else if (halfWidth <= precision) {
+      this.verdict = "FLAKY";
+    } else {
+      this.verdict = "UNDECIDED";
+    }
+  }
+
+  /** Whether {@code runs} is one of the run counts that the interval is looked at. */
+  static boolean isLook(int runs) {
+    return runs % FIRST_LOOK == 0 && Integer.bitCount(runs / FIRST_LOOK) == 1;
+  }
+
+  /**
+   * Estimate over the runs of both, e.g. of the same test in two forks. The forks looked at
+   * disjoint runs, each spending its own error budget, so the combined interval takes the level of
+   * the fork that looked most often rather than the sum of all looks.
+   */
+  FlakeEstimate merge(FlakeEstimate other) {
+    return new FlakeEstimate(testName, runs + other.runs, failures + other.failures, Math.max(looks, other.looks),
+        confidence, precision);
+  }
+
+  /** The interval answers the question: broken, or flaky with the configured precision. */
+  boolean isSettled() {
+    return !"UNDECIDED".equals(verdict);
+  }
+
+  /** Two-sided critical value: P(|Z| >= z) = alpha. */
+  static double zScore(double alpha) {
+    double low = 0;
+    double high = 40;
+    for (int i = 0; i < 100; i++) {
+      double middle = (low + high) / 2;
+      if (2 * DurationRegressions.upperTail(middle) > alpha) {
+        low = middle;
+      } else {
+        high = middle;
+      }
+    }
+    return (low + high) / 2;
+  }
+
+  public String getTestName() {
+    return testName;
+  }
+
+  /** Repeated runs after the failure that started them; that failure does not count. */
+  public int getRuns() {
+    return runs;
+  }
+
+  public int getFailures() {
+    return failures;
+  }
+
+  public int getLooks() {
+    return looks;
+  }
+
+  public double getConfidence() {
+    return confidence;
+  }
+
+  /** Half width of the interval at which a flaky test counts as settled. */
+  public double getPrecision() {
+    return precision;
+  }
+
+  public double getFlakeRate() {
+    return flakeRate;
+  }
+
+  public double getLowerBound() {
+    return lowerBound;
+  }
+
+  public double getUpperBound() {
+    return upperBound;
+  }
+
+  /** BROKEN, FLAKY (failure rate known within the precision) or UNDECIDED (out of runs). */
+  public String getVerdict() {
+    return verdict;
+  }
+}
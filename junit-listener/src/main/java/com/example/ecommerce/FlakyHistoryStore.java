@@ -0,0 +1,537 @@
+package com.example.ecommerce;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, crash-tolerant record of test outcomes across builds.
+ *
+ * <p>Every JVM appends to its own segment files ({@code segment-<millis>-<random>-<seq>.log}),
+ * so forks never share a file. Each record is {@code [length][crc32][payload]}; a torn tail
+ * left by a killed JVM fails the length or CRC check and is ignored on replay.
+ *
+ * <p>Startup does not read the whole history: {@code summary.bin} holds one aggregate per
+ * test plus the number of bytes already applied from each segment, and only the segment tails
+ * written after the last checkpoint are replayed. The summary is rewritten atomically, under a
+ * file lock shared by all forks, when the store is closed. Tests that no build ran for the
+ * configured maximum age are dropped from it then, so renamed and deleted tests do not pile up.
+ *
+ * <p>A session is one build: its id is derived from {@code maven.build.timestamp}, which all forks
+ * and rerun rounds of a Maven build share. Without it (e.g. in an IDE) every JVM is a session.
+ *
+ * <p>The rolling flake rate is an exponentially weighted average of "this session both failed
+ * and passed" per test, so reading it is a single map lookup. Durations of passed attempts go
+ * into a {@link DurationSketch} per test, the baseline for {@link DurationRegressions}.
+ */
+public final class FlakyHistoryStore implements Closeable {
+
+  // Weight of the newest session; roughly a ten-build window
+  static final double ALPHA = 0.2;
+  // Weight older builds keep in the duration baseline when a new one arrives; roughly twenty builds
+  static final double DURATION_DECAY = 0.95;
+
+  private static final int SUMMARY_MAGIC = 0x464c4b59;
+  private static final int SUMMARY_VERSION = 3;
+  private static final String SUMMARY_FILE = "summary.bin";
+  private static final String LOCK_FILE = "summary.lock";
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int MAX_RECORD_BYTES = 1 << 20;
+  private static final long PRUNE_AFTER_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+  private final Path directory;
+  private final long maxSegmentBytes;
+  private final int retainedSegments;
+  private final long maxAgeMillis;
+  private final long sessionId = sessionId();
+  private final String segmentBase;
+  private State state;
+  private int segmentSeq;
+  private FileChannel segment;
+  private Path segmentPath;
+  private long segmentSize;
+
+  private FlakyHistoryStore(Path directory, long maxSegmentBytes, int retainedSegments, long maxAgeMillis,
+      State state) {
+    this.directory = directory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.retainedSegments = retainedSegments;
+    this.maxAgeMillis = maxAgeMillis;
+    this.state = state;
+    this.segmentBase = String.format("%s%013d-%08x-", SEGMENT_PREFIX, System.currentTimeMillis(),
+        ThreadLocalRandom.current().nextInt());
+  }
+
+  /** {@code maxAgeMillis} is how long a test stays in the summary after the last build that ran it. */
+  public static FlakyHistoryStore open(Path directory, long maxSegmentBytes, int retainedSegments, long maxAgeMillis)
+      throws IOException {
+    Files.createDirectories(directory);
+    return new FlakyHistoryStore(directory, maxSegmentBytes, retainedSegments, maxAgeMillis,
+        State.load(directory));
+  }
+
+  private static long sessionId() {
+    String timestamp = System.getProperty("maven.build.timestamp");
+    if (timestamp == null || timestamp.isEmpty()) {
+      return ThreadLocalRandom.current().nextLong();
+    }
+    return UUID.nameUUIDFromBytes(timestamp.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /** Appends the attempt outcomes a test produced since the previous call for that test. */
+  public synchronized void append(List<Outcome> outcomes) throws IOException {
+    if (outcomes.isEmpty()) {
+      return;
+    }
+    ByteArrayOutputStream batch = new ByteArrayOutputStream(outcomes.size() * 96);
+    long now = System.currentTimeMillis();
+    for (Outcome outcome : outcomes) {
+      writeRecord(batch, outcome, now);
+    }
+    FileChannel channel = currentSegment();
+    ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    segmentSize += batch.size();
+    for (Outcome outcome : outcomes) {
+      state.apply(outcome.testName, sessionId, now, outcome.passed, outcome.failed, outcome.durations);
+    }
+    state.applied.put(segmentPath.getFileName().toString(), segmentSize);
+  }
+
+  /** Rolling flake rate of the test, including the current session; 0 when it has no history. */
+  public synchronized double flakeRate(String testName) {
+    TestHistory history = state.tests.get(testName);
+    return history == null ? 0 : history.rate();
+  }
+
+  /**
+   * Durations of the test's passed attempts in earlier sessions, older ones faded out, or null
+   * when there are none. The current session is left out, so it can be compared against it.
+   */
+  public synchronized DurationSketch durationBaseline(String testName) {
+    TestHistory history = state.tests.get(testName);
+    return history == null ? null : history.baseline(sessionId);
+  }
+
+  /** Number of builds that ran the test, including the current one. */
+  public synchronized int sessions(String testName) {
+    TestHistory history = state.tests.get(testName);
+    return history == null ? 0 : history.sessionsIncludingOpen();
+  }
+
+  /**
+   * Folds every segment tail written since the last checkpoint (by this or any other JVM) into
+   * {@code summary.bin} and prunes old, fully applied segments.
+   */
+  public synchronized void checkpoint() throws IOException {
+    try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      FileLock lock = lockChannel.lock();
+      try {
+        State fresh = State.load(directory);
+        fresh.evict(System.currentTimeMillis() - maxAgeMillis);
+        prune(fresh);
+        fresh.write(directory);
+        state = fresh;
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      closeSegment();
+    } finally {
+      checkpoint();
+    }
+  }
+
+  private FileChannel currentSegment() throws IOException {
+    if (segment != null && segmentSize >= maxSegmentBytes) {
+      closeSegment();
+    }
+    if (segment == null) {
+      segmentPath = directory.resolve(String.format("%s%04d%s", segmentBase, segmentSeq++, SEGMENT_SUFFIX));
+      segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      segmentSize = 0;
+    }
+    return segment;
+  }
+
+  private void closeSegment() throws IOException {
+    if (segment != null) {
+      segment.close();
+      segment = null;
+    }
+  }
+
+  private void prune(State fresh) throws IOException {
+    List<Path> segments = listSegments(directory);
+    long cutoff = System.currentTimeMillis() - PRUNE_AFTER_MILLIS;
+    int removable = segments.size() - retainedSegments;
+    for (int i = 0; i < segments.size() && removable > 0; i++) {
+      Path path = segments.get(i);
+      String name = path.getFileName().toString();
+      FileTime modified = Files.getLastModifiedTime(path);
+      // Only segments that are fully applied and no longer written to
+      if (path.equals(segmentPath) || modified.toMillis() > cutoff
+          || fresh.applied.getOrDefault(name, 0L) < Files.size(path)) {
+        continue;
+      }
+      Files.deleteIfExists(path);
+      fresh.applied.remove(name);
+      removable--;
+    }
+  }
+
+  private void writeRecord(OutputStream out, Outcome outcome, long timestamp) throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+    DataOutputStream data = new DataOutputStream(payload);
+    data.writeLong(sessionId);
+    data.writeLong(timestamp);
+    data.writeUTF(outcome.testName);
+    data.writeInt(outcome.passed);
+    data.writeInt(outcome.failed);
+    // Optional trailer; records without it are read as having no durations
+    if (outcome.durations != null && !outcome.durations.isEmpty()) {
+      outcome.durations.write(data);
+    }
+    data.flush();
+
+    CRC32 crc = new CRC32();
+    crc.update(payload.toByteArray());
+    DataOutputStream record = new DataOutputStream(out);
+    record.writeInt(payload.size());
+    record.writeInt((int) crc.getValue());
+    payload.writeTo(record);
+    record.flush();
+  }
+
+  private static List<Path> listSegments(Path directory) throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        segments.add(path);
+      }
+    }
+    // Names start with the creation time, so lexical order is chronological
+    Collections.sort(segments);
+    return segments;
+  }
+
+  /** Attempt outcomes of one test since its previous record. */
+  public static final class Outcome {
+
+    private final String testName;
+    private final int passed;
+    private final int failed;
+    // Wall-clock times of the passed attempts, or null
+    private final DurationSketch durations;
+
+    public Outcome(String testName, int passed, int failed) {
+      this(testName, passed, failed, null);
+    }
+
+    Outcome(String testName, int passed, int failed, DurationSketch durations) {
+      this.testName = testName;
+      this.passed = passed;
+      this.failed = failed;
+      this.durations = durations;
+    }
+  }
+
+  private static final class State {
+
+    private final Map<String, TestHistory> tests = new HashMap<>();
+    // Bytes of each segment already folded into the tests above
+    private final Map<String, Long> applied = new HashMap<>();
+
+    static State load(Path directory) throws IOException {
+      State state = new State();
+      Path summary = directory.resolve(SUMMARY_FILE);
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(summary)))) {
+        state.read(in);
+      } catch (NoSuchFileException e) {
+        // First run
+      } catch (IOException e) {
+        System.err.println("Ignoring unreadable flaky history summary " + summary + ": " + e.getMessage());
+        state.tests.clear();
+        state.applied.clear();
+      }
+      List<String> present = new ArrayList<>();
+      for (Path segment : listSegments(directory)) {
+        state.replay(segment);
+        present.add(segment.getFileName().toString());
+      }
+      // Forget offsets of segments pruned by another JVM
+      state.applied.keySet().retainAll(present);
+      return state;
+    }
+
+    void apply(String testName, long sessionId, long timestamp, int passed, int failed, DurationSketch durations) {
+      tests.computeIfAbsent(testName, key -> new TestHistory())
+          .apply(sessionId, timestamp, passed, failed, durations);
+    }
+
+    void evict(long cutoffMillis) {
+      tests.values().removeIf(history -> history.lastSeenMillis < cutoffMillis);
+    }
+
+    private void replay(Path segment) throws IOException {
+      String name = segment.getFileName().toString();
+      long offset = applied.getOrDefault(name, 0L);
+      long size = Files.size(segment);
+      if (offset >= size) {
+        return;
+      }
+      try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+        channel.position(offset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        while (offset < size) {
+          int length;
+          int checksum;
+          byte[] payload;
+          try {
+            length = in.readInt();
+            checksum = in.readInt();
+            if (length < 0 || length > MAX_RECORD_BYTES) {
+              break;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+          } catch (EOFException e) {
+            // Torn tail of a segment that is still being written, or of a crashed JVM
+            break;
+          }
+          CRC32 crc = new CRC32();
+          crc.update(payload);
+          if ((int) crc.getValue() != checksum) {
+            break;
+          }
+          DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+          long sessionId = record.readLong();
+          long timestamp = record.readLong();
+          String testName = record.readUTF();
+          int passed = record.readInt();
+          int failed = record.readInt();
+          apply(testName, sessionId, timestamp, passed, failed,
+              record.available() > 0 ? DurationSketch.read(record) : null);
+          offset += 8 + length;
+        }
+      }
+      applied.put(name, offset);
+    }
+
+    private void read(DataInputStream in) throws IOException {
+      if (in.readInt() != SUMMARY_MAGIC) {
+        throw new IOException("unknown summary format");
+      }
+      // Version 1 summaries have no durations, version 2 no last-seen times
+      int version = in.readInt();
+      if (version < 1 || version > SUMMARY_VERSION) {
+        throw new IOException("unknown summary format");
+      }
+      int segments = in.readInt();
+      for (int i = 0; i < segments; i++) {
+        applied.put(in.readUTF(), in.readLong());
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        tests.put(in.readUTF(), TestHistory.read(in, version));
+      }
+    }
+
+    void write(Path directory) throws IOException {
+      Path target = directory.resolve(SUMMARY_FILE);
+      Path temp = directory.resolve(SUMMARY_FILE + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(SUMMARY_MAGIC);
+        out.writeInt(SUMMARY_VERSION);
+        out.writeInt(applied.size());
+        for (Map.Entry<String, Long> entry : applied.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeLong(entry.getValue());
+        }
+        out.writeInt(tests.size());
+        for (Map.Entry<String, TestHistory> entry : tests.entrySet()) {
+          out.writeUTF(entry.getKey());
+          entry.getValue().write(out);
+        }
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  private static final class TestHistory {
+
+    private int sessions;
+    private int flakySessions;
+    private double flakeRate;
+    private long totalPassed;
+    private long totalFailed;
+    // The newest session stays open until a record from a later session arrives
+    private long openSession;
+    private int openPassed;
+    private int openFailed;
+    // Durations of closed sessions and of the open one; null until the test has some
+    private DurationSketch durations;
+    private DurationSketch openDurations;
+    // Time of the newest record, for evicting tests that no longer run
+    private long lastSeenMillis;
+
+    void apply(long sessionId, long timestamp, int passed, int failed, DurationSketch attemptDurations) {
+      lastSeenMillis = Math.max(lastSeenMillis, timestamp);
+      if (sessionId != openSession) {
+        closeOpenSession();
+        openSession = sessionId;
+      }
+      openPassed += passed;
+      openFailed += failed;
+      totalPassed += passed;
+      totalFailed += failed;
+      if (attemptDurations != null) {
+        if (openDurations == null) {
+          openDurations = new DurationSketch();
+        }
+        openDurations.merge(attemptDurations);
+      }
+    }
+
+    DurationSketch baseline(long currentSession) {
+      DurationSketch baseline = durations != null ? durations.copy() : null;
+      if (openDurations != null && openSession != currentSession) {
+        if (baseline == null) {
+          baseline = new DurationSketch();
+        } else {
+          baseline.scale(DURATION_DECAY);
+        }
+        baseline.merge(openDurations);
+      }
+      return baseline;
+    }
+
+    double rate() {
+      if (openPassed + openFailed == 0) {
+        return flakeRate;
+      }
+      return next(flakeRate, sessions, isOpenSessionFlaky());
+    }
+
+    int sessionsIncludingOpen() {
+      return sessions + (openPassed + openFailed > 0 ? 1 : 0);
+    }
+
+    private void closeOpenSession() {
+      if (openDurations != null) {
+        if (durations == null) {
+          durations = new DurationSketch();
+        } else {
+          durations.scale(DURATION_DECAY);
+        }
+        durations.merge(openDurations);
+        openDurations = null;
+      }
+      if (openPassed + openFailed == 0) {
+        return;
+      }
+      boolean flaky = isOpenSessionFlaky();
+      flakeRate = next(flakeRate, sessions, flaky);
+      sessions++;
+      if (flaky) {
+        flakySessions++;
+      }
+      openPassed = 0;
+      openFailed = 0;
+    }
+
+    private boolean isOpenSessionFlaky() {
+      return openPassed > 0 && openFailed > 0;
+    }
+
+    private static double next(double rate, int sessions, boolean flaky) {
+      double sample = flaky ? 1 : 0;
+      return sessions == 0 ? sample : ALPHA * sample + (1 - ALPHA) * rate;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(sessions);
+      out.writeInt(flakySessions);
+      out.writeDouble(flakeRate);
+      out.writeLong(totalPassed);
+      out.writeLong(totalFailed);
+      out.writeLong(openSession);
+      out.writeInt(openPassed);
+      out.writeInt(openFailed);
+      writeSketch(out, durations);
+      writeSketch(out, openDurations);
+      out.writeLong(lastSeenMillis);
+    }
+
+    static TestHistory read(DataInputStream in, int version) throws IOException {
+      TestHistory history = new TestHistory();
+      history.sessions = in.readInt();
+      history.flakySessions = in.readInt();
+      history.flakeRate = in.readDouble();
+      history.totalPassed = in.readLong();
+      history.totalFailed = in.readLong();
+      history.openSession = in.readLong();
+      history.openPassed = in.readInt();
+      history.openFailed = in.readInt();
+      if (version >= 2) {
+        history.durations = readSketch(in);
+        history.openDurations = readSketch(in);
+      }
+      // Older summaries start their age from the upgrade
+      history.lastSeenMillis = version >= 3 ? in.readLong() : System.currentTimeMillis();
+      return history;
+    }
+
+    private static void writeSketch(DataOutputStream out, DurationSketch sketch) throws IOException {
+      out.writeBoolean(sketch != null);
+      if (sketch != null) {
+        sketch.write(out);
+      }
+    }
+
+    private static DurationSketch readSketch(DataInputStream in) throws IOException {
+      return in.readBoolean() ? DurationSketch.read(in) : null;
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Attempt;
+import com.example.ecommerce.MyTestWatcher.Data;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Combines the per-fork segments of a Surefire run into one module report.
+ *
+ * <p>With {@code forkCount > 1} or {@code reuseForks=false} every fork JVM has its own
+ * {@link DataStore}. Each fork writes its whole tracker to its own segment file, named after
+ * its start time, pid and a random suffix, so no two forks ever write the same file and no
+ * locking is needed. Segments are written to a temp file and renamed.
+ *
+ * <p>After writing its segment, a fork merges every segment in the directory into the module
+ * report (again temp file plus rename) and lists the directory once more. A fork rewrites its
+ * segment under the same name after every test plan, so segments are compared by name, file
+ * key, size and modification time. If any segment was added or rewritten in the meantime, the
+ * fork merges again. A fork that renamed an older merge over a newer report thus sees the
+ * changed segment and merges once more, and the last fork to finish leaves a report that covers
+ * every segment, unless forks keep rewriting segments for eight merge rounds in a row.
+ * Allocation accounting, GC totals, stalls and test overlaps are only known inside one JVM, so
+ * merged reports leave those sections out. The same merge can be run by hand:
+ *
+ * <pre>java -cp junit-listener.jar com.example.ecommerce.ForkReportMerger &lt;forks-dir&gt; &lt;report-file&gt;</pre>
+ */
+public final class ForkReportMerger {
+
+  static final String SEGMENT_SUFFIX = ".json";
+
+  // Bounds the retry loop if forks keep finishing while we merge
+  private static final int MAX_MERGE_ROUNDS = 8;
+
+  private static final Gson GSON = new Gson();
+  private static final String SEGMENT_NAME = String.format("fork-%d-%s-%08x%s",
+      ManagementFactory.getRuntimeMXBean().getStartTime(),
+      ManagementFactory.getRuntimeMXBean().getName().split("@")[0],
+      ThreadLocalRandom.current().nextInt(), SEGMENT_SUFFIX);
+
+  private ForkReportMerger() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: ForkReportMerger <forks-dir> <report-file>");
+      System.exit(2);
+    }
+    int segments = merge(Paths.get(args[0]), Paths.get(args[1]), WatcherConfig.defaults(), null);
+    System.out.println("Merged " + segments + " fork segment(s) into " + args[1]);
+  }
+
+  /** Writes this JVM's tracker, failures and fixture timings (null if disabled) as its segment. */
+  static void writeSegment(Path forksDir, Iterable<Data> tests, FailureCatalog failures, FixtureTimings fixtures)
+      throws IOException {
+    Files.createDirectories(forksDir);
+    Path segment = forksDir.resolve(SEGMENT_NAME);
+    Path temp = forksDir.resolve(SEGMENT_NAME + ".tmp");
+    try (ReportWriter writer = ReportWriter.open(temp, false)) {
+      writer.beginSection("tests");
+      for (Data data : tests) {
+        writer.writeEntry(new SegmentTest(data));
+      }
+      writer.endSection();
+
+      writer.beginSection("failures");
+      for (FailureCatalog.Failure failure : failures.getFailures()) {
+        writer.writeEntry(new SegmentFailure(failure));
+      }
+      writer.endSection();
+
+      if (fixtures != null) {
+        writer.beginSection("fixtures");
+        for (Entry<String, long[][]> entry : fixtures.totals().entrySet()) {
+          writer.writeEntry(new SegmentFixtures(entry.getKey(), entry.getValue()));
+        }
+        writer.endSection();
+      }
+    }
+    Files.move(temp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Merges all segments into the report until the set of segments stops changing.
+   *
+   * @return the number of segments in the final report
+   */
+  static int mergeUntilStable(Path forksDir, Path reportFile, WatcherConfig config,
+      FlakyHistoryStore history) throws IOException {
+    List<String> merged = Collections.emptyList();
+    for (int round = 0; round < MAX_MERGE_ROUNDS; round++) {
+      List<Path> segments = listSegments(forksDir);
+      List<String> versions = versions(segments);
+      if (versions.equals(merged)) {
+        break;
+      }
+      merge(segments, reportFile, config, history);
+      merged = versions;
+    }
+    return merged.size();
+  }
+
+  /** Identifies the current version of each segment; every rewrite is a new file, renamed over the old one. */
+  private static List<String> versions(List<Path> segments) throws IOException {
+    List<String> versions = new ArrayList<>();
+    for (Path segment : segments) {
+      BasicFileAttributes attributes = Files.readAttributes(segment, BasicFileAttributes.class);
+      versions.add(segment.getFileName() + " " + attributes.fileKey() + " " + attributes.size() + " "
+          + attributes.lastModifiedTime());
+    }
+    return versions;
+  }
+
+  static int merge(Path forksDir, Path reportFile, WatcherConfig config, FlakyHistoryStore history)
+      throws IOException {
+    List<Path> segments = listSegments(forksDir);
+    merge(segments, reportFile, config, history);
+    return segments.size();
+  }
+
+  private static void merge(List<Path> segments, Path reportFile, WatcherConfig config,
+      FlakyHistoryStore history) throws IOException {
+    Map<String, Data> tests = new HashMap<>();
+    FailureCatalog failures = new FailureCatalog();
+    FixtureTimings fixtures = new FixtureTimings();
+    for (Path segment : segments) {
+      readSegment(segment, tests, failures, fixtures);
+    }
+
+    Path temp = reportFile.resolveSibling(reportFile.getFileName() + "." + SEGMENT_NAME + ".tmp");
+    // Allocation overhead and test overlaps are only known for this JVM, so merged reports leave them out
+    ModuleReport.fromTracker(tests, failures, history, config, null, null, null,
+        config.isFixtureTiming() || !fixtures.isEmpty() ? fixtures : null).write(temp, config);
+    Files.move(temp, reportFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void readSegment(Path segment, Map<String, Data> tests, FailureCatalog failures,
+      FixtureTimings fixtures) throws IOException {
+    // Failures come after tests in a segment, so link fingerprints once the file is read
+    Map<Data, String> fingerprints = new HashMap<>();
+    try (Reader in = Files.newBufferedReader(segment, StandardCharsets.UTF_8);
+        JsonReader json = new JsonReader(in)) {
+      json.beginObject();
+      while (json.hasNext()) {
+        String section = json.nextName();
+        json.beginArray();
+        while (json.hasNext()) {
+          if ("tests".equals(section)) {
+            SegmentTest test = GSON.fromJson(json, SegmentTest.class);
+            Data data = tests.computeIfAbsent(test.uniqueId,
+                key -> new Data(tests.size(), test.uniqueId, test.className));
+            test.mergeInto(data);
+            if (test.lastFailureFingerprint != null) {
+              fingerprints.put(data, test.lastFailureFingerprint);
+            }
+          } else if ("failures".equals(section)) {
+            GSON.<SegmentFailure>fromJson(json, SegmentFailure.class).mergeInto(failures);
+          } else if ("fixtures".equals(section)) {
+            SegmentFixtures segmentFixtures = GSON.fromJson(json, SegmentFixtures.class);
+            fixtures.add(segmentFixtures.className, segmentFixtures.nanos, segmentFixtures.calls);
+          } else {
+            json.skipValue();
+          }
+        }
+        json.endArray();
+      }
+      json.endObject();
+    }
+    for (Entry<Data, String> entry : fingerprints.entrySet()) {
+      FailureSnapshot snapshot = failures.get(entry.getValue());
+      if (snapshot != null) {
+        entry.getKey().setFailure(snapshot);
+      }
+    }
+  }
+
+  private static List<Path> listSegments(Path forksDir) throws IOException {
+    List<Path> segments = new ArrayList<>();
+    if (!Files.isDirectory(forksDir)) {
+      return segments;
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(forksDir, "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        segments.add(path);
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  // DTO class for JSON serialization
+  private static class SegmentTest {
+    private String uniqueId;
+    private String className;
+    private int executions;
+    private int failures;
+    private String lastStatus;
+    private String lastFailureFingerprint;
+    private long totalWallNanos;
+    private long totalCpuNanos;
+    private long maxWallNanos;
+    private long totalAllocatedBytes;
+    private long gcOverlapNanos;
+    private long failedGcOverlapNanos;
+    private List<SegmentAttempt> attempts;
+    private FlakeEstimate flakeEstimate;
+
+    SegmentTest(Data data) {
+      Data.Snapshot state = data.snapshot();
+      this.uniqueId = data.getUniqueId();
+      this.className = data.getClassName();
+      this.executions = state.getCount();
+      this.failures = state.getFailureCount();
+      this.lastStatus = state.getLastStatus();
+      this.lastFailureFingerprint = state.getFailure() != null ? state.getFailure().getFingerprint() : null;
+      this.totalWallNanos = state.getTotalWallNanos();
+      this.totalCpuNanos = state.getTotalCpuNanos();
+      this.maxWallNanos = state.getMaxWallNanos();
+      this.totalAllocatedBytes = state.getTotalAllocatedBytes();
+      this.gcOverlapNanos = state.getGcOverlapNanos();
+      this.failedGcOverlapNanos = state.getFailedGcOverlapNanos();
+      this.attempts = new ArrayList<>();
+      for (Attempt attempt : state.getAttempts()) {
+        attempts.add(new SegmentAttempt(attempt));
+      }
+      this.flakeEstimate = data.getFlakeEstimate();
+    }
+
+    void mergeInto(Data data) {
+      List<Attempt> restored = new ArrayList<>(attempts.size());
+      for (SegmentAttempt attempt : attempts) {
+        restored.add(new Attempt(attempt.status, attempt.wallNanos, attempt.cpuNanos, attempt.allocatedBytes,
+            attempt.gcNanos));
+      }
+      data.merge(Data.Snapshot.restored(executions, failures, lastStatus, totalWallNanos, totalCpuNanos,
+          maxWallNanos, totalAllocatedBytes, gcOverlapNanos, failedGcOverlapNanos, restored));
+      if (flakeEstimate != null) {
+        data.addFlakeEstimate(flakeEstimate);
+      }
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class SegmentAttempt {
+    private String status;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long gcNanos;
+
+    SegmentAttempt(Attempt attempt) {
+      this.status = attempt.getStatus();
+      this.wallNanos = attempt.getWallNanos();
+      this.cpuNanos = attempt.getCpuNanos();
+      this.allocatedBytes = attempt.getAllocatedBytes();
+      this.gcNanos = attempt.getGcNanos();
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class SegmentFailure {
+    private String fingerprint;
+    private String exceptionClass;
+    private String message;
+    private long occurrences;
+    private String trace;
+
+    SegmentFailure(FailureCatalog.Failure failure) {
+      FailureSnapshot snapshot = failure.getSnapshot();
+      this.fingerprint = snapshot.getFingerprint();
+      this.exceptionClass = snapshot.getExceptionClass();
+      this.message = snapshot.getMessage();
+      this.occurrences = failure.getOccurrences();
+      this.trace = snapshot.render();
+    }
+
+    void mergeInto(FailureCatalog failures) {
+      failures.merge(FailureSnapshot.restored(fingerprint, exceptionClass, message, trace), occurrences);
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class SegmentFixtures {
+    private String className;
+    private long[] nanos;
+    private long[] calls;
+
+    SegmentFixtures(String className, long[][] totals) {
+      this.className = className;
+      this.nanos = totals[0];
+      this.calls = totals[1];
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Data;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Attributes GC pauses to the test attempts that overlapped them.
+ *
+ * <p>Pauses arrive as {@link GarbageCollectorMXBean} notifications on a JMX thread, shortly
+ * after the collection ended. A pause is charged to every attempt still in flight (through its
+ * {@link AttemptClock}) and to every recently finished attempt whose interval overlaps it, so
+ * pauses reported after a short test already finished are still attributed. Notifications whose
+ * {@code gcAction} is a whole GC cycle (ZGC and Shenandoah cycles) are not pauses and are ignored;
+ * their pauses come from the collector's separate pauses bean. Collectors that only report whole
+ * cycles, such as CMS or ZGC before JDK 17, are charged for the full cycle.
+ *
+ * <p>GcInfo start and end times have millisecond resolution, so overlaps are accurate to about a
+ * millisecond, and pauses reported as 0 ms long are skipped.
+ *
+ * <p>Finishing attempts take no lock and allocate nothing: each thread publishes its finished
+ * clocks to its own ring, and the clock's GC time is closed with a compare-and-set. A pause is
+ * charged to each clock at most once, either while it is open, or afterwards to its test's totals.
+ */
+final class GcMonitor implements NotificationListener {
+
+  // Finished attempts kept per thread for late notifications; pauses are reported within milliseconds
+  private static final int RECENT_ATTEMPTS = 256;
+
+  private final Map<String, AttemptClock> inFlight;
+  // GcInfo times are milliseconds of JVM uptime; attempts use System.nanoTime
+  private final long nanoOrigin = System.nanoTime();
+  private final long uptimeOriginMs = ManagementFactory.getRuntimeMXBean().getUptime();
+  private final List<Recent> rings = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<Recent> recent = ThreadLocal.withInitial(() -> {
+    Recent ring = new Recent();
+    rings.add(ring);
+    return ring;
+  });
+  private final List<NotificationEmitter> emitters = new ArrayList<>();
+  private volatile boolean enabled;
+  private long pauses;
+  private long pauseNanos;
+
+  GcMonitor(Map<String, AttemptClock> inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  synchronized void setEnabled(boolean enable) {
+    if (enable == enabled) {
+      return;
+    }
+    if (enable) {
+      for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+        if (collector instanceof NotificationEmitter) {
+          NotificationEmitter emitter = (NotificationEmitter) collector;
+          emitter.addNotificationListener(this, null, null);
+          emitters.add(emitter);
+        }
+      }
+    } else {
+      for (NotificationEmitter emitter : emitters) {
+        try {
+          emitter.removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+          // Already gone
+        }
+      }
+      emitters.clear();
+    }
+    enabled = enable;
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Closes an attempt for GC attribution.
+   *
+   * @return the GC pause time that overlapped the attempt so far, in nanoseconds
+   */
+  long attemptFinished(AttemptClock clock, Data data, boolean failed, long endNanos) {
+    if (!enabled) {
+      return 0;
+    }
+    // Tests in the compact tracker keep no GC totals to charge late pauses to
+    if (data != null) {
+      clock.finish(data, failed, endNanos);
+      Recent ring = recent.get();
+      ring.clocks.set(ring.next, clock);
+      ring.next = (ring.next + 1) % RECENT_ATTEMPTS;
+    }
+    // Closed after publishing, so a pause that finds the clock closed also finds it in the ring
+    return clock.closeGc();
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+      return;
+    }
+    GarbageCollectionNotificationInfo info =
+        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+    if (info.getGcAction().contains("cycle")) {
+      return;
+    }
+    GcInfo gc = info.getGcInfo();
+    if (gc.getDuration() <= 0) {
+      return;
+    }
+    onPause(toNanos(gc.getStartTime()), toNanos(gc.getEndTime()));
+  }
+
+  synchronized void onPause(long startNanos, long endNanos) {
+    long pause = ++pauses;
+    pauseNanos += endNanos - startNanos;
+    for (AttemptClock clock : inFlight.values()) {
+      long overlap = endNanos - Math.max(startNanos, clock.getStartNanos());
+      if (overlap > 0 && clock.addGc(overlap)) {
+        clock.setChargedPause(pause);
+      }
+    }
+    for (Recent ring : rings) {
+      for (int i = 0; i < RECENT_ATTEMPTS; i++) {
+        AttemptClock clock = ring.clocks.get(i);
+        if (clock == null || clock.getChargedPause() == pause) {
+          continue;
+        }
+        long overlap = Math.min(endNanos, clock.getEndNanos()) - Math.max(startNanos, clock.getStartNanos());
+        // Finished but not closed yet: the pause still reaches the attempt itself
+        if (overlap > 0 && !clock.addGc(overlap)) {
+          clock.getData().addGcOverlap(overlap, clock.isFailed());
+        }
+      }
+    }
+  }
+
+  synchronized long getPauses() {
+    return pauses;
+  }
+
+  synchronized long getPauseNanos() {
+    return pauseNanos;
+  }
+
+  private long toNanos(long uptimeMs) {
+    return nanoOrigin + (uptimeMs - uptimeOriginMs) * 1_000_000L;
+  }
+
+  /** Recently finished clocks of one thread; written by that thread only. */
+  private static final class Recent {
+    private final AtomicReferenceArray<AttemptClock> clocks = new AtomicReferenceArray<>(RECENT_ATTEMPTS);
+    private int next;
+  }
+}
@@ -0,0 +1,75 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for test attempts, failures and retry rounds.
+ *
+ * <p>The events are emitted by {@code JfrRecorder} in {@code src/main/java11}, which is compiled
+ * for Java 11 next to these classes. It is only loaded if the JVM has {@code jdk.jfr.Event} and
+ * can load Java 11 classes; otherwise every method here does nothing. The choice is made at
+ * runtime, so it holds for the jar as well as for {@code target/classes} in a reactor build.
+ * Handles returned by the start methods are opaque and may be null.
+ */
+class JfrEvents {
+
+  private static final Recorder RECORDER = load();
+
+  private JfrEvents() {
+  }
+
+  /** Called when an attempt starts, on the thread that runs it. */
+  static Object attemptStarted() {
+    return RECORDER.attemptStarted();
+  }
+
+  static void attemptFinished(Object handle, String uniqueId, int attempt, String status) {
+    RECORDER.attemptFinished(handle, uniqueId, attempt, status);
+  }
+
+  static void testFailed(Data data, int attempt, FailureSnapshot failure) {
+    RECORDER.testFailed(data, attempt, failure);
+  }
+
+  /** Called when a test plan starts; plans after the first are Surefire rerun rounds. */
+  static Object roundStarted(int round) {
+    return RECORDER.roundStarted(round);
+  }
+
+  /** {@code compactTests} counts the tests of the compact tracker that passed in the round. */
+  static void roundFinished(Object handle, List<Data> tests, int compactTests) {
+    RECORDER.roundFinished(handle, tests, compactTests);
+  }
+
+  private static Recorder load() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return (Recorder) Class.forName("com.example.ecommerce.JfrRecorder").getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // No JFR, or Java 8 with the JFR backport, which cannot load the Java 11 class
+      return new Recorder();
+    }
+  }
+
+  /** Does nothing; {@code JfrRecorder} overrides every method. */
+  static class Recorder {
+
+    Object attemptStarted() {
+      return null;
+    }
+
+    void attemptFinished(Object handle, String uniqueId, int attempt, String status) {
+    }
+
+    void testFailed(Data data, int attempt, FailureSnapshot failure) {
+    }
+
+    Object roundStarted(int round) {
+      return null;
+    }
+
+    void roundFinished(Object handle, List<Data> tests, int compactTests) {
+    }
+  }
+}
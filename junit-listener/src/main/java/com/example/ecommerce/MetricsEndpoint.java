@@ -0,0 +1,130 @@
+package com.example.ecommerce;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link TestMetrics} while tests run: on a localhost HTTP port served by the JDK's
+ * built-in server, and/or as a file for the node_exporter textfile collector. Both run on one
+ * daemon thread, so neither a scrape nor a file write touches the test threads.
+ */
+final class MetricsEndpoint {
+
+  private static final String OPENMETRICS_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+  private static final String PROMETHEUS_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final TestMetrics metrics;
+  private ScheduledExecutorService executor;
+  private HttpServer server;
+  private Path textFile;
+
+  MetricsEndpoint(TestMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /** Starts serving on {@code port} (0 picks a free one, -1 none) and writing {@code textFile} (or none). */
+  synchronized void start(int port, Path textFile, int intervalSeconds) {
+    if (executor != null || (port < 0 && textFile == null)) {
+      return;
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "junit5-watcher-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (port >= 0) {
+      startServer(port);
+    }
+    if (textFile != null) {
+      this.textFile = textFile;
+      executor.scheduleWithFixedDelay(this::writeTextFile, 0, Math.max(1, intervalSeconds), TimeUnit.SECONDS);
+    }
+  }
+
+  /** Writes the text file now, on the metrics thread; called when a test plan finishes. */
+  synchronized void update() {
+    if (executor != null && textFile != null) {
+      executor.execute(this::writeTextFile);
+    }
+  }
+
+  /** Stops the server and writes the text file a last time. */
+  synchronized void stop() {
+    if (executor == null) {
+      return;
+    }
+    if (server != null) {
+      server.stop(0);
+      server = null;
+    }
+    executor.shutdownNow();
+    executor = null;
+    if (textFile != null) {
+      writeTextFile();
+    }
+  }
+
+  private void startServer(int port) {
+    try {
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+      server.createContext("/metrics", this::handle);
+      server.setExecutor(executor);
+      // Started on the daemon thread: the server's dispatcher thread inherits it and never keeps the JVM alive
+      executor.submit(server::start).get();
+      System.out.println("JUnit5 test metrics at http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+          + server.getAddress().getPort() + "/metrics");
+    } catch (IOException | ExecutionException e) {
+      System.err.println("Test metrics endpoint disabled, cannot listen on port " + port + ": " + e.getMessage());
+      server = null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      server = null;
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      // Prometheus asks for OpenMetrics; plain clients such as curl get the classic text format
+      String accept = exchange.getRequestHeaders().getFirst("Accept");
+      boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+      byte[] body = metrics.render(openMetrics).getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", openMetrics ? OPENMETRICS_TYPE : PROMETHEUS_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private synchronized void writeTextFile() {
+    // Renamed into place, so the collector never reads a partial file
+    Path temp = textFile.resolveSibling(textFile.getFileName() + ".tmp");
+    try {
+      if (textFile.getParent() != null) {
+        Files.createDirectories(textFile.getParent());
+      }
+      Files.write(temp, metrics.render(false).getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, textFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.err.println("Failed to write test metrics to " + textFile + ": " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,538 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Attempt;
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Module report sections. Built either from the incrementally maintained {@link TrackerIndex}
+ * of this JVM, or with a full scan of a tracker map, e.g. one merged from several Surefire forks.
+ */
+final class ModuleReport {
+
+  private final List<Data> flakyTests;
+  private final List<Data> slowestTests;
+  private final List<Data> topAllocators;
+  private final AllocationMeter allocationMeter;
+  private final GcMonitor gcMonitor;
+  private final StallWatchdog watchdog;
+  private final List<DurationRegressions.Regression> durationRegressions;
+  private final List<FlakeEstimate> flakeEstimates;
+  private final List<OverlapIndex.FailureOverlap> failureOverlaps;
+  private final List<FixtureTimings.ClassFixtures> fixtureCosts;
+  private final Collection<ClassDuration> classDurations;
+  private final FailureCatalog failures;
+  private final FlakyHistoryStore history;
+
+  ModuleReport(List<Data> flakyTests, List<Data> slowestTests, List<Data> topAllocators,
+      Collection<ClassDuration> classDurations, FailureCatalog failures, FlakyHistoryStore history,
+      AllocationMeter allocationMeter, GcMonitor gcMonitor, StallWatchdog watchdog,
+      List<DurationRegressions.Regression> durationRegressions, List<FlakeEstimate> flakeEstimates,
+      List<OverlapIndex.FailureOverlap> failureOverlaps, List<FixtureTimings.ClassFixtures> fixtureCosts) {
+    this.flakyTests = flakyTests;
+    this.slowestTests = slowestTests;
+    this.topAllocators = topAllocators;
+    this.allocationMeter = allocationMeter;
+    this.gcMonitor = gcMonitor;
+    this.watchdog = watchdog;
+    this.durationRegressions = durationRegressions;
+    this.flakeEstimates = flakeEstimates;
+    this.failureOverlaps = failureOverlaps;
+    this.fixtureCosts = fixtureCosts;
+    this.classDurations = classDurations;
+    this.failures = failures;
+    this.history = history;
+  }
+
+  static ModuleReport fromTracker(Map<String, Data> tests, FailureCatalog failures,
+      FlakyHistoryStore history, WatcherConfig config, AllocationMeter allocationMeter, GcMonitor gcMonitor,
+      StallWatchdog watchdog, FixtureTimings fixtures) {
+    Map<String, ClassDuration> byClass = new HashMap<>();
+    for (Data data : tests.values()) {
+      byClass.computeIfAbsent(data.getClassName(), ClassDuration::new).add(data);
+    }
+    // Segments carry estimates even when the merging JVM has repeats turned off
+    List<FlakeEstimate> flakeEstimates = flakeEstimates(tests.values());
+    return new ModuleReport(flakyTests(tests),
+        top(tests, config.getSlowestTests(), Data.Snapshot::getTotalWallNanos),
+        top(tests, config.getTopAllocators(), Data.Snapshot::getTotalAllocatedBytes),
+        byClass.values(), failures, history, allocationMeter, gcMonitor, watchdog,
+        history != null && config.isRegressionDetection() ? durationRegressions(tests, history, config) : null,
+        config.getConfidenceMaxRuns() > 0 || !flakeEstimates.isEmpty() ? flakeEstimates : null, null,
+        fixtures != null ? fixtures.getClassFixtures() : null);
+  }
+
+  /** Estimates of the tests that have one, highest failure rate first. */
+  static List<FlakeEstimate> flakeEstimates(Collection<Data> tests) {
+    List<FlakeEstimate> estimates = new ArrayList<>();
+    for (Data data : tests) {
+      FlakeEstimate estimate = data.getFlakeEstimate();
+      if (estimate != null) {
+        estimates.add(estimate);
+      }
+    }
+    estimates.sort(Comparator.comparingDouble(FlakeEstimate::getFlakeRate).reversed()
+        .thenComparing(FlakeEstimate::getTestName));
+    return estimates;
+  }
+
+  static List<DurationRegressions.Regression> durationRegressions(Map<String, Data> tests,
+      FlakyHistoryStore history, WatcherConfig config) {
+    DurationRegressions regressions = new DurationRegressions();
+    for (Data data : tests.values()) {
+      String testName = data.getName();
+      regressions.update(data.getId(), DurationRegressions.check(testName,
+          DurationRegressions.passedWallNanos(data.snapshot()), history.durationBaseline(testName), config));
+    }
+    return regressions.getRegressions();
+  }
+
+  static boolean isFlaky(Data.Snapshot state) {
+    // Flaky tests: count > 1 AND last status is PASSED
+    return state.getCount() > 1 && "PASSED".equals(state.getLastStatus());
+  }
+
+  static List<Data> flakyTests(Map<String, Data> tests) {
+    return tests.values().stream()
+        .filter(it -> isFlaky(it.snapshot()))
+        .collect(Collectors.toList());
+  }
+
+  List<Data> getFlakyTests() {
+    return flakyTests;
+  }
+
+  void write(Path reportFile, WatcherConfig config) throws IOException {
+    try (ReportWriter writer = ReportWriter.open(reportFile, config)) {
+      // Entries are written one at a time; tests reference failures by fingerprint
+      writer.beginSection("flakyTests");
+      for (Data data : flakyTests) {
+        Data.Snapshot state = data.snapshot();
+        FailureSnapshot failure = state.getFailure();
+        String testName = data.getName();
+
+        writer.writeEntry(new TestReport(
+            testName,
+            state.getCount(),
+            state.getLastStatus(),
+            failure != null ? failure.getFingerprint() : null,
+            state.getAttempts(),
+            state.getGcOverlapNanos(),
+            state.getFailedGcOverlapNanos(),
+            history != null ? history.flakeRate(testName) : null,
+            history != null ? history.sessions(testName) : null
+        ));
+      }
+      writer.endSection();
+
+      // One canonical trace per fingerprint
+      writer.beginSection("failures");
+      for (FailureCatalog.Failure failure : failures.getFailures()) {
+        writer.writeEntry(new FailureReport(failure));
+      }
+      writer.endSection();
+
+      writer.beginSection("slowestTests");
+      for (Data data : slowestTests) {
+        writer.writeEntry(new TestDuration(data));
+      }
+      writer.endSection();
+
+      writer.beginSection("topAllocators");
+      for (Data data : topAllocators) {
+        if (data.snapshot().getTotalAllocatedBytes() > 0) {
+          writer.writeEntry(new TestAllocation(data));
+        }
+      }
+      writer.endSection();
+
+      writer.beginSection("classDurations");
+      List<ClassDuration> sorted = new ArrayList<>(classDurations);
+      sorted.sort(Comparator.comparingDouble(ClassDuration::getTotalWallTimeMs).reversed());
+      for (ClassDuration duration : sorted) {
+        writer.writeEntry(duration);
+      }
+      writer.endSection();
+
+      if (allocationMeter != null) {
+        writer.beginSection("allocationAccounting");
+        writer.writeEntry(new AllocationOverhead(allocationMeter));
+        writer.endSection();
+      }
+
+      if (gcMonitor != null) {
+        writer.beginSection("garbageCollection");
+        writer.writeEntry(new GcSummary(gcMonitor));
+        writer.endSection();
+      }
+
+      if (durationRegressions != null) {
+        writer.beginSection("durationRegressions");
+        for (DurationRegressions.Regression regression : durationRegressions) {
+          writer.writeEntry(regression);
+        }
+        writer.endSection();
+      }
+
+      if (flakeEstimates != null) {
+        writer.beginSection("flakeEstimates");
+        for (FlakeEstimate estimate : flakeEstimates) {
+          writer.writeEntry(estimate);
+        }
+        writer.endSection();
+      }
+
+      if (failureOverlaps != null) {
+        writer.beginSection("failureOverlaps");
+        for (OverlapIndex.FailureOverlap overlap : failureOverlaps) {
+          writer.writeEntry(overlap);
+        }
+        writer.endSection();
+      }
+
+      if (fixtureCosts != null) {
+        writer.beginSection("fixtureCosts");
+        for (FixtureTimings.ClassFixtures fixtures : fixtureCosts) {
+          writer.writeEntry(fixtures);
+        }
+        writer.endSection();
+      }
+
+      if (watchdog != null) {
+        writer.beginSection("stalledTests");
+        for (StallWatchdog.Stall stall : watchdog.getStalls()) {
+          writer.writeEntry(stall);
+        }
+        writer.endSection();
+      }
+    }
+  }
+
+  private static List<Data> top(Map<String, Data> tests, int limit, ToLongFunction<Data.Snapshot> key) {
+    if (limit <= 0) {
+      return Collections.emptyList();
+    }
+    // Bounded min-heap: keeps the top N without sorting the whole tracker
+    Comparator<Data> byKey = Comparator.comparingLong(data -> key.applyAsLong(data.snapshot()));
+    Queue<Data> top = new PriorityQueue<>(limit + 1, byKey);
+    for (Data data : tests.values()) {
+      top.add(data);
+      if (top.size() > limit) {
+        top.poll();
+      }
+    }
+    List<Data> sorted = new ArrayList<>(top);
+    sorted.sort(byKey.reversed());
+    return sorted;
+  }
+
+  // DTO class for JSON serialization
+  private static class TestReport {
+    private final String testName;
+    private final int executionCount;
+    private final String status;
+    private final String lastFailureFingerprint;
+    private final List<Attempt> attempts;
+    // Omitted when no GC pause overlapped the test
+    private final Double gcOverlapMs;
+    private final Double failedAttemptsGcOverlapMs;
+    private final Double historicalFlakeRate;
+    private final Integer historicalBuilds;
+
+    public TestReport(String testName, int executionCount, String status, String lastFailureFingerprint,
+        List<Attempt> attempts, long gcOverlapNanos, long failedGcOverlapNanos, Double historicalFlakeRate,
+        Integer historicalBuilds) {
+      this.testName = testName;
+      this.executionCount = executionCount;
+      this.status = status;
+      this.lastFailureFingerprint = lastFailureFingerprint;
+      this.attempts = attempts;
+      this.gcOverlapMs = gcOverlapNanos > 0 ? MyTestWatcher.toMillis(gcOverlapNanos) : null;
+      this.failedAttemptsGcOverlapMs =
+          failedGcOverlapNanos > 0 ? MyTestWatcher.toMillis(failedGcOverlapNanos) : null;
+      this.historicalFlakeRate = historicalFlakeRate;
+      this.historicalBuilds = historicalBuilds;
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    public int getExecutionCount() {
+      return executionCount;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    public String getLastFailureFingerprint() {
+      return lastFailureFingerprint;
+    }
+
+    public List<Attempt> getAttempts() {
+      return attempts;
+    }
+
+    public Double getGcOverlapMs() {
+      return gcOverlapMs;
+    }
+
+    public Double getFailedAttemptsGcOverlapMs() {
+      return failedAttemptsGcOverlapMs;
+    }
+
+    public Double getHistoricalFlakeRate() {
+      return historicalFlakeRate;
+    }
+
+    public Integer getHistoricalBuilds() {
+      return historicalBuilds;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class FailureReport {
+    private final String fingerprint;
+    private final String exceptionClass;
+    private final String message;
+    private final long occurrences;
+    private final String trace;
+
+    public FailureReport(FailureCatalog.Failure failure) {
+      FailureSnapshot snapshot = failure.getSnapshot();
+      this.fingerprint = snapshot.getFingerprint();
+      this.exceptionClass = snapshot.getExceptionClass();
+      this.message = snapshot.getMessage();
+      this.occurrences = failure.getOccurrences();
+      this.trace = snapshot.render();
+    }
+
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    public String getExceptionClass() {
+      return exceptionClass;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    public long getOccurrences() {
+      return occurrences;
+    }
+
+    public String getTrace() {
+      return trace;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class TestDuration {
+    private final String testName;
+    private final int executionCount;
+    private final double totalWallTimeMs;
+    private final double totalCpuTimeMs;
+    private final double maxWallTimeMs;
+
+    public TestDuration(Data data) {
+      Data.Snapshot state = data.snapshot();
+      this.testName = data.getName();
+      this.executionCount = state.getCount();
+      this.totalWallTimeMs = MyTestWatcher.toMillis(state.getTotalWallNanos());
+      this.totalCpuTimeMs = MyTestWatcher.toMillis(state.getTotalCpuNanos());
+      this.maxWallTimeMs = MyTestWatcher.toMillis(state.getMaxWallNanos());
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    public int getExecutionCount() {
+      return executionCount;
+    }
+
+    public double getTotalWallTimeMs() {
+      return totalWallTimeMs;
+    }
+
+    public double getTotalCpuTimeMs() {
+      return totalCpuTimeMs;
+    }
+
+    public double getMaxWallTimeMs() {
+      return maxWallTimeMs;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class TestAllocation {
+    private final String testName;
+    private final int executionCount;
+    private final long totalAllocatedBytes;
+    private final long allocatedBytesPerExecution;
+
+    public TestAllocation(Data data) {
+      Data.Snapshot state = data.snapshot();
+      this.testName = data.getName();
+      this.executionCount = state.getCount();
+      this.totalAllocatedBytes = state.getTotalAllocatedBytes();
+      this.allocatedBytesPerExecution = totalAllocatedBytes / Math.max(1, executionCount);
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    public int getExecutionCount() {
+      return executionCount;
+    }
+
+    public long getTotalAllocatedBytes() {
+      return totalAllocatedBytes;
+    }
+
+    public long getAllocatedBytesPerExecution() {
+      return allocatedBytesPerExecution;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class AllocationOverhead {
+    private final boolean enabled;
+    private final boolean supported;
+    private final long reads;
+    private final double nanosPerRead;
+    private final double estimatedOverheadMs;
+
+    public AllocationOverhead(AllocationMeter meter) {
+      this.enabled = meter.isEnabled();
+      this.supported = meter.isSupported();
+      this.reads = meter.getReads();
+      this.nanosPerRead = Math.max(0, meter.getNanosPerRead());
+      this.estimatedOverheadMs = MyTestWatcher.toMillis((long) (reads * nanosPerRead));
+    }
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public boolean isSupported() {
+      return supported;
+    }
+
+    public long getReads() {
+      return reads;
+    }
+
+    public double getNanosPerRead() {
+      return nanosPerRead;
+    }
+
+    public double getEstimatedOverheadMs() {
+      return estimatedOverheadMs;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class GcSummary {
+    private final boolean enabled;
+    private final long pauses;
+    private final double totalPauseMs;
+
+    public GcSummary(GcMonitor monitor) {
+      this.enabled = monitor.isEnabled();
+      this.pauses = monitor.getPauses();
+      this.totalPauseMs = MyTestWatcher.toMillis(monitor.getPauseNanos());
+    }
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public long getPauses() {
+      return pauses;
+    }
+
+    public double getTotalPauseMs() {
+      return totalPauseMs;
+    }
+  }
+
+  // DTO class for JSON serialization
+  static class ClassDuration {
+    private final String className;
+    private int tests;
+    private int executions;
+    private transient long totalWallNanos;
+    private transient long totalCpuNanos;
+    private double totalWallTimeMs;
+    private double totalCpuTimeMs;
+    private long totalAllocatedBytes;
+
+    public ClassDuration(String className) {
+      this.className = className;
+    }
+
+    public ClassDuration(String className, int tests, int executions, long totalWallNanos,
+        long totalCpuNanos, long totalAllocatedBytes) {
+      this.className = className;
+      this.totalAllocatedBytes = totalAllocatedBytes;
+      this.tests = tests;
+      this.executions = executions;
+      this.totalWallNanos = totalWallNanos;
+      this.totalCpuNanos = totalCpuNanos;
+      this.totalWallTimeMs = MyTestWatcher.toMillis(totalWallNanos);
+      this.totalCpuTimeMs = MyTestWatcher.toMillis(totalCpuNanos);
+    }
+
+    void add(Data data) {
+      Data.Snapshot state = data.snapshot();
+      tests++;
+      executions += state.getCount();
+      totalWallNanos += state.getTotalWallNanos();
+      totalCpuNanos += state.getTotalCpuNanos();
+      totalAllocatedBytes += state.getTotalAllocatedBytes();
+      totalWallTimeMs = MyTestWatcher.toMillis(totalWallNanos);
+      totalCpuTimeMs = MyTestWatcher.toMillis(totalCpuNanos);
+    }
+
+    public String getClassName() {
+      return className;
+    }
+
+    public int getTests() {
+      return tests;
+    }
+
+    public int getExecutions() {
+      return executions;
+    }
+
+    public double getTotalWallTimeMs() {
+      return totalWallTimeMs;
+    }
+
+    public double getTotalCpuTimeMs() {
+      return totalCpuTimeMs;
+    }
+
+    public long getTotalAllocatedBytes() {
+      return totalAllocatedBytes;
+    }
+  }
+}
@@ -1,73 +1,172 @@
 package com.example.ecommerce;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.lang.reflect.Method;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.api.extension.TestWatcher;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.launcher.LauncherSession;
+import org.junit.platform.launcher.LauncherSessionListener;
 import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.TestPlan;
 
-public class MyTestWatcher implements TestWatcher, TestExecutionListener {
+public class MyTestWatcher implements TestWatcher, TestExecutionListener, LauncherSessionListener {
 
   // Session-level timestamp to ensure same filename across multiple test plan executions
   private static final String SESSION_TIMESTAMP = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
 
+  // JFR RetryRound event of the running test plan, or null
+  private Object roundEvent;
+
+  @Override
+  public void testPlanExecutionStarted(TestPlan testPlan) {
+    WatcherConfig config = WatcherConfig.from(testPlan.getConfigurationParameters());
+    DataStore.instance.setConfig(config);
+    roundEvent = JfrEvents.roundStarted(DataStore.instance.nextRound());
+    if (config.isHistoryEnabled()) {
+      DataStore.instance.openHistory(config.getHistoryDir(), config.getHistoryMaxAgeDays());
+    }
+    // One file per fork; forks of a module share the build timestamp
+    String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    Path targetDir = Paths.get(System.getProperty("user.dir"), "target");
+    if (config.isTraceEnabled()) {
+      String filename = String.format("junit5-trace-%s-%s.json", getBuildTimestamp(), pid);
+      DataStore.instance.openTrace(targetDir.resolve(filename));
+    }
+    DataStore.instance.getMetricsEndpoint().start(config.getMetricsPort(), config.getMetricsFile(),
+        config.getMetricsIntervalSeconds());
+    // A stalled test may never finish its plan, so the report is also written when one is found
+    DataStore.instance.getWatchdog().start(config.getStallTimeoutSeconds(), TimeUnit.SECONDS,
+        targetDir.resolve(String.format("junit5-stall-%s-%s", getBuildTimestamp(), pid)),
+        () -> DataStore.instance.getReports().submit(() -> writeModuleReport(Collections.emptyList())));
+  }
+
+  @Override
+  public void executionStarted(TestIdentifier testIdentifier) {
+    TraceRecorder trace = DataStore.instance.getTrace();
+    if (trace != null) {
+      trace.started(testIdentifier);
+    }
+    if (testIdentifier.isTest()) {
+      DataStore.instance.getInFlight().put(testIdentifier.getUniqueId(), AttemptClock.start());
+      DataStore.instance.getMetrics().attemptStarted();
+    }
+  }
+
+  @Override
+  public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+    // Aborted tests never reach testSuccessful/testFailed, so drop their clock here
+    if (testIdentifier.isTest()) {
+      DataStore.instance.getInFlight().remove(testIdentifier.getUniqueId());
+    }
+    TraceRecorder trace = DataStore.instance.getTrace();
+    if (trace != null) {
+      trace.finished(testIdentifier, testExecutionResult.getStatus());
+    }
+  }
+
   @Override
   public void testSuccessful(ExtensionContext context) {
-    String testIdentifier = getFullyQualifiedTestName(context);
-    Data data = getTracker().computeIfAbsent(testIdentifier, key -> new Data());
-    data.increment();
-    data.setLastStatus("PASSED");
+    recordSuccess(context);
   }
 
   @Override
   public void testFailed(ExtensionContext context, Throwable cause) {
-    String testIdentifier = getFullyQualifiedTestName(context);
-    Data data = getTracker().computeIfAbsent(testIdentifier, key -> new Data());
-    data.increment();
-    data.setThrowable(cause);
-    data.setLastStatus("FAILED");
+    recordFailure(context, cause);
   }
 
-  private String getFullyQualifiedTestName(ExtensionContext context) {
-    // Get the test class name
-    String className = context.getTestClass()
-        .map(Class::getName)
-        .orElse("UnknownClass");
+  /** Records a passed attempt; also used by {@link RetryInterceptor} for the runs it repeats. */
+  static void recordSuccess(ExtensionContext context) {
+    CompactTracker compact = DataStore.instance.getCompactTracker();
+    if (compact != null && DataStore.instance.getTracker().get(context.getUniqueId()) == null) {
+      // Never failed: stays in the compact tracker. A test never runs two attempts at once, so it
+      // cannot be promoted between the lookup and the record.
+      String className = DataStore.className(context.getTestClass().orElse(null));
+      Attempt attempt = finishAttempt(context, null, "PASSED");
+      int count = compact.recordPassed(context.getUniqueId(), className, attempt);
+      DataStore.instance.getIndex().countAttempt(className, count, attempt);
+      DataStore.instance.getMetrics().attemptFinished(true, count, 0, attempt);
+      return;
+    }
+    Data data = register(context);
+    Attempt attempt = finishAttempt(context, data, "PASSED");
+    Data.Snapshot state = data.record("PASSED", null, attempt);
+    DataStore.instance.getIndex().onAttempt(data, state, attempt);
+    DataStore.instance.getMetrics().attemptFinished(true, state.getCount(), state.getFailureCount(), attempt);
+  }
 
-    // Get the test method name
-    String methodName = context.getTestMethod()
-        .map(Method::getName)
-        .orElse("unknownMethod");
+  /** Records a failed attempt; also used by {@link RetryInterceptor} for the attempts it retries. */
+  static void recordFailure(ExtensionContext context, Throwable cause) {
+    Data data = register(context);
+    // Keep the interned snapshot for this failure's fingerprint, never the Throwable itself
+    FailureSnapshot failure = DataStore.instance.getFailureCatalog()
+        .record(cause, DataStore.instance.getConfig().getMaxFailureFrames());
+    Attempt attempt = finishAttempt(context, data, "FAILED");
+    Data.Snapshot state = data.record("FAILED", failure, attempt);
+    JfrEvents.testFailed(data, state.getCount(), failure);
+    DataStore.instance.getIndex().onAttempt(data, state, attempt);
+    DataStore.instance.getMetrics().attemptFinished(false, state.getCount(), state.getFailureCount(), attempt);
+  }
 
-    // Get display name which includes parameter values for parameterized tests
-    String displayName = context.getDisplayName();
+  /** Keeps the failure rate that {@link RetryInterceptor} estimated by repeating the test. */
+  static void recordFlakeEstimate(ExtensionContext context, FlakeEstimate estimate) {
+    Data data = register(context);
+    data.addFlakeEstimate(estimate);
+    DataStore.instance.getEstimatedTests().add(data);
+  }
 
-    // For parameterized tests, use the display name which includes parameters
-    // For regular tests, use the method name
-    // Display name examples: "[1] flaky@example.com", "[2] valid@example.com", "methodName()"
-    if (displayName != null && !displayName.equals(methodName + "()")) {
-      // This is a parameterized test - use display name with parameters
-      return className + "#" + displayName;
+  /** Closes the attempt's clock; {@code data} is null for a test in the compact tracker. */
+  private static Attempt finishAttempt(ExtensionContext context, Data data, String status) {
+    Map<String, AttemptClock> inFlight = DataStore.instance.getInFlight();
+    AttemptClock clock = inFlight.get(context.getUniqueId());
+    if (clock == null) {
+      return null;
     }
+    long wallNanos = clock.elapsedNanos();
+    long cpuNanos = clock.elapsedCpuNanos();
+    long allocatedBytes = clock.elapsedAllocatedBytes();
+    // Closed for GC attribution before it leaves the in-flight set, so no pause is missed
+    long gcNanos = DataStore.instance.getGcMonitor()
+        .attemptFinished(clock, data, "FAILED".equals(status), clock.getStartNanos() + wallNanos);
+    inFlight.remove(context.getUniqueId(), clock);
+    if (DataStore.instance.getConfig().isOverlapIndex()) {
+      DataStore.instance.getOverlaps().finished(context.getUniqueId(), clock.getStartNanos(),
+          clock.getStartNanos() + wallNanos, "FAILED".equals(status), inFlight);
+    }
+    Object jfrEvent = clock.getJfrEvent();
+    if (jfrEvent != null) {
+      // Recorded right after; a test never runs two attempts at once
+      int previous = data != null ? data.getCount()
+          : DataStore.instance.getCompactTracker().getCount(context.getUniqueId());
+      JfrEvents.attemptFinished(jfrEvent, context.getUniqueId(), previous + 1, status);
+    }
+    return new Attempt(status, wallNanos, cpuNanos, allocatedBytes, gcNanos);
+  }
 
-    return className + "#" + methodName;
+  private static Data register(ExtensionContext context) {
+    // Keyed by unique id: stable across builds, unlike display names such as "[1] flaky@example.com".
+    // The readable name is only derived from it when a report is written.
+    String uniqueId = context.getUniqueId();
+    Data data = DataStore.instance.getTracker().get(uniqueId);
+    if (data != null) {
+      return data;
+    }
+    return DataStore.instance.register(uniqueId, context.getTestClass().orElse(null));
   }
 
   private Map<String, Data> getTracker() {
@@ -76,43 +175,152 @@ public class MyTestWatcher implements TestWatcher, TestExecutionListener {
 
   @Override
   public void testPlanExecutionFinished(TestPlan testPlan) {
-    // Filter for flaky tests: count > 1 AND last status is PASSED
-    List<Entry<String, Data>> flakyTests = getTracker().entrySet().stream()
-        .filter(it -> it.getValue().getCount() > 1)
-        .filter(it -> "PASSED".equals(it.getValue().getLastStatus()))
-        .collect(Collectors.toList());
-
-    if (!flakyTests.isEmpty()) {
-      // Print to console for this module
-      System.err.println("================================================================");
-      System.out.println(">>>>>>>JUnit5: FLAKY TESTS DETECTED in <" + testPlan.toString() + ">");
-      flakyTests.forEach(it -> {
-        System.out.println("Test " + it.getKey() + " executed " + it.getValue().getCount() + " time(s) - Status: " + it.getValue().getLastStatus());
-        if (it.getValue().getThrowable() != null) {
-          StringWriter sw = new StringWriter();
-          it.getValue().getThrowable().printStackTrace(new PrintWriter(sw));
-          System.out.println("Last failure: " + sw);
-        }
-      });
-      System.err.println("================================================================\n");
-
-      // Write JSON report for this module
-      writeModuleReport(flakyTests);
+    // Only tests that recorded attempts in this plan; retry plans touch just the reruns
+    List<Data> changed = DataStore.instance.getIndex().drainDirty();
+    CompactTracker compact = DataStore.instance.getCompactTracker();
+    int compactChanged = compact != null ? compact.dirtyCount() : 0;
+    JfrEvents.roundFinished(roundEvent, changed, compactChanged);
+    roundEvent = null;
+    DataStore.instance.getMetricsEndpoint().update();
+    TraceRecorder trace = DataStore.instance.getTrace();
+    if (trace != null) {
+      DataStore.instance.getReports().submit(trace::drain);
+    }
+    if (changed.isEmpty() && compactChanged == 0) {
+      return;
     }
+    // Console, history and report are written in the background; the next plan starts now
+    String planName = testPlan.toString();
+    DataStore.instance.getReports().submit(() -> {
+      printFlakyTests(planName, changed);
+      recordHistory(changed, drainCompactTracker());
+      checkRegressions(changed);
+      // Write JSON report for this module
+      writeModuleReport(changed);
+    });
 
     // DO NOT clear the tracker - we need it to persist across retry test plans
     // Each retry is a new test plan execution, so we need to accumulate counts
   }
 
-  private void writeModuleReport(List<Entry<String, Data>> results) {
-    // Use maven.build.timestamp if available, otherwise use a session-based timestamp
-    String timestamp = System.getProperty("maven.build.timestamp");
-    if (timestamp == null || timestamp.isEmpty()) {
-      // Fallback to a session-based timestamp (same for entire JVM session)
-      timestamp = getSessionTimestamp();
+  @Override
+  public void launcherSessionClosed(LauncherSession session) {
+    // Surefire closes the session before the fork exits; the shutdown hook is the fallback
+    DataStore.instance.getReports().flush();
+    DataStore.instance.getMetricsEndpoint().stop();
+  }
+
+  private void printFlakyTests(String planName, List<Data> changed) {
+    List<Data> changedFlakyTests = new ArrayList<>();
+    for (Data data : changed) {
+      if (ModuleReport.isFlaky(data.snapshot())) {
+        changedFlakyTests.add(data);
+      }
+    }
+    if (changedFlakyTests.isEmpty()) {
+      return;
+    }
+
+    // Built in one buffer and printed at once, so parallel test output cannot interleave with it
+    StringBuilder out = new StringBuilder();
+    out.append("================================================================\n");
+    out.append(">>>>>>>JUnit5: FLAKY TESTS DETECTED in <").append(planName).append(">\n");
+    // Identical traces are printed once and referenced by fingerprint afterwards
+    Set<String> printed = new HashSet<>();
+    for (Data data : changedFlakyTests) {
+      Data.Snapshot state = data.snapshot();
+      out.append("Test ").append(data.getName()).append(" executed ").append(state.getCount())
+          .append(" time(s) - Status: ").append(state.getLastStatus()).append('\n');
+      FailureSnapshot failure = state.getFailure();
+      if (state.getFailedGcOverlapNanos() > 0) {
+        out.append("Failed attempts overlapped ").append(Math.round(toMillis(state.getFailedGcOverlapNanos())))
+            .append(" ms of GC\n");
+      }
+      if (failure != null) {
+        out.append("Last failure [").append(failure.getFingerprint()).append("]: ");
+        out.append(printed.add(failure.getFingerprint()) ? failure.render() : "same as above\n");
+      }
     }
+    out.append("================================================================\n\n");
+    System.out.print(out);
+    System.out.flush();
+  }
 
-    String filename = String.format("junit5-retry-report-%s.txt", timestamp);
+  /**
+   * Ranks and checks for duration regressions the green tests of the compact tracker that passed
+   * since the previous plan, and returns their outcomes for the history. Their durations are the
+   * mean of all their attempts, as the compact tracker keeps no single attempts.
+   */
+  private List<FlakyHistoryStore.Outcome> drainCompactTracker() {
+    CompactTracker compact = DataStore.instance.getCompactTracker();
+    List<FlakyHistoryStore.Outcome> outcomes = new ArrayList<>();
+    if (compact == null) {
+      return outcomes;
+    }
+    FlakyHistoryStore history = DataStore.instance.getHistory();
+    WatcherConfig config = DataStore.instance.getConfig();
+    TrackerIndex index = DataStore.instance.getIndex();
+    compact.drainDirty((id, uniqueId, count, newPasses, totalWallNanos, totalAllocatedBytes) -> {
+      index.rankCompact(id, totalWallNanos, totalAllocatedBytes, () -> compact.view(uniqueId),
+          config.getSlowestTests(), config.getTopAllocators());
+      if (history == null) {
+        return;
+      }
+      String testName = TestNames.of(uniqueId);
+      long meanNanos = totalWallNanos / count;
+      if (newPasses > 0) {
+        DurationSketch durations = null;
+        if (totalWallNanos > 0) {
+          durations = new DurationSketch();
+          durations.add(meanNanos, newPasses);
+        }
+        outcomes.add(new FlakyHistoryStore.Outcome(testName, newPasses, 0, durations));
+      }
+      if (config.isRegressionDetection() && totalWallNanos > 0) {
+        DataStore.instance.getRegressions().update(id, DurationRegressions.check(testName,
+            new long[] {meanNanos}, history.durationBaseline(testName), config));
+      }
+    });
+    return outcomes;
+  }
+
+  private void checkRegressions(List<Data> changed) {
+    FlakyHistoryStore history = DataStore.instance.getHistory();
+    WatcherConfig config = DataStore.instance.getConfig();
+    if (history == null || !config.isRegressionDetection()) {
+      return;
+    }
+    DurationRegressions regressions = DataStore.instance.getRegressions();
+    for (Data data : changed) {
+      String testName = data.getName();
+      regressions.update(data.getId(), DurationRegressions.check(testName,
+          DurationRegressions.passedWallNanos(data.snapshot()), history.durationBaseline(testName), config));
+    }
+  }
+
+  private void recordHistory(List<Data> changed, List<FlakyHistoryStore.Outcome> outcomes) {
+    FlakyHistoryStore history = DataStore.instance.getHistory();
+    if (history == null) {
+      return;
+    }
+    // Only attempts since the previous test plan; retry rounds append their own outcomes
+    for (Data data : changed) {
+      FlakyHistoryStore.Outcome outcome = data.takeUnrecordedOutcome();
+      if (outcome != null) {
+        outcomes.add(outcome);
+      }
+    }
+    try {
+      history.append(outcomes);
+    } catch (IOException e) {
+      System.err.println("Failed to append flaky test history: " + e.getMessage());
+    }
+  }
+
+  private void writeModuleReport(List<Data> changed) {
+    String timestamp = getBuildTimestamp();
+    WatcherConfig config = DataStore.instance.getConfig();
+    String filename = String.format("junit5-retry-report-%s%s", timestamp, ReportWriter.fileExtension(config));
     Path targetDir = Paths.get(System.getProperty("user.dir"), "target");
     Path reportFile = targetDir.resolve(filename);
 
@@ -120,102 +328,426 @@ public class MyTestWatcher implements TestWatcher, TestExecutionListener {
       // Create target directory if it doesn't exist
       Files.createDirectories(targetDir);
 
-      // Convert results to a list of TestReport objects
-      List<TestReport> reports = new ArrayList<>();
-      for (Entry<String, Data> entry : results) {
-        String lastFailure = null;
-        if (entry.getValue().getThrowable() != null) {
-          StringWriter sw = new StringWriter();
-          entry.getValue().getThrowable().printStackTrace(new PrintWriter(sw));
-          lastFailure = sw.toString();
-        }
-
-        reports.add(new TestReport(
-            entry.getKey(),
-            entry.getValue().getCount(),
-            entry.getValue().getLastStatus(),
-            lastFailure
-        ));
+      if (config.isForkAggregation()) {
+        // Every fork publishes its own segment; the report is merged from all of them
+        Path forksDir = targetDir.resolve(String.format("junit5-retry-report-%s-forks", timestamp));
+        ForkReportMerger.writeSegment(forksDir, DataStore.instance.getTests(), DataStore.instance.getFailureCatalog(),
+            config.isFixtureTiming() ? DataStore.instance.getFixtures() : null);
+        int forks = ForkReportMerger.mergeUntilStable(forksDir, reportFile, config, DataStore.instance.getHistory());
+        System.out.println("Test retry report merged from " + forks + " fork(s) into: " + reportFile.toAbsolutePath());
+        return;
       }
 
-      // Use Gson to generate JSON
-      Gson gson = new GsonBuilder().setPrettyPrinting().create();
-      String json = gson.toJson(reports);
-
-      Files.write(reportFile, json.getBytes(),
-          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+      TrackerIndex index = DataStore.instance.getIndex();
+      ModuleReport report = new ModuleReport(
+          index.flakyTests(),
+          index.updateSlowest(changed, config.getSlowestTests()),
+          index.updateTopAllocators(changed, config.getTopAllocators()),
+          index.classDurations(),
+          DataStore.instance.getFailureCatalog(),
+          DataStore.instance.getHistory(),
+          DataStore.instance.getAllocationMeter(),
+          DataStore.instance.getGcMonitor(),
+          DataStore.instance.getWatchdog(),
+          DataStore.instance.getHistory() != null && config.isRegressionDetection()
+              ? DataStore.instance.getRegressions().getRegressions() : null,
+          config.getConfidenceMaxRuns() > 0
+              ? ModuleReport.flakeEstimates(DataStore.instance.getEstimatedTests()) : null,
+          config.isOverlapIndex()
+              ? DataStore.instance.getOverlaps().getFailureOverlaps(config.getOverlapConcurrentTests()) : null,
+          config.isFixtureTiming() ? DataStore.instance.getFixtures().getClassFixtures() : null);
+      report.write(reportFile, config);
 
       System.out.println("Test retry report written to: " + reportFile.toAbsolutePath());
-      System.out.println("Total retried tests in this module: " + results.size());
+      System.out.println("Total retried tests in this module: " + report.getFlakyTests().size());
     } catch (IOException e) {
       System.err.println("Failed to write test retry report: " + e.getMessage());
       e.printStackTrace();
     }
   }
 
-  private static String getSessionTimestamp() {
-    return SESSION_TIMESTAMP;
+  private static String getBuildTimestamp() {
+    // Use maven.build.timestamp if available, otherwise use a session-based timestamp
+    String timestamp = System.getProperty("maven.build.timestamp");
+    if (timestamp == null || timestamp.isEmpty()) {
+      // Fallback to a session-based timestamp (same for entire JVM session)
+      timestamp = SESSION_TIMESTAMP;
+    }
+    return timestamp;
   }
 
-  // DTO class for JSON serialization
-  private static class TestReport {
-    private final String testName;
-    private final int executionCount;
-    private final String status;
-    private final String lastFailure;
+  static double toMillis(long nanos) {
+    return nanos < 0 ? -1 : nanos / 1_000_000.0;
+  }
+
+  public static class Attempt {
 
-    public TestReport(String testName, int executionCount, String status, String lastFailure) {
-      this.testName = testName;
-      this.executionCount = executionCount;
+    private final String status;
+    private final double wallTimeMs;
+    private final double cpuTimeMs;
+    // Omitted from the report when allocation accounting is off
+    private final Long allocatedBytes;
+    // Omitted from the report when no GC pause overlapped the attempt
+    private final Double gcOverlapMs;
+    private final transient long wallNanos;
+    private final transient long cpuNanos;
+    private final transient long gcNanos;
+
+    public Attempt(String status, long wallNanos, long cpuNanos, long allocatedBytes, long gcNanos) {
       this.status = status;
-      this.lastFailure = lastFailure;
+      this.wallNanos = wallNanos;
+      this.cpuNanos = cpuNanos;
+      this.gcNanos = gcNanos;
+      this.allocatedBytes = allocatedBytes >= 0 ? allocatedBytes : null;
+      this.gcOverlapMs = gcNanos > 0 ? toMillis(gcNanos) : null;
+      this.wallTimeMs = toMillis(wallNanos);
+      this.cpuTimeMs = toMillis(cpuNanos);
+    }
+
+    public String getStatus() {
+      return status;
     }
 
-    public String getTestName() {
-      return testName;
+    public long getWallNanos() {
+      return wallNanos;
     }
 
-    public int getExecutionCount() {
-      return executionCount;
+    /** CPU time of the attempt on its worker thread, or -1 if not measured. */
+    public long getCpuNanos() {
+      return cpuNanos;
     }
 
-    public String getStatus() {
-      return status;
+    /** Bytes allocated by the worker thread during the attempt, or -1 if not measured. */
+    public long getAllocatedBytes() {
+      return allocatedBytes != null ? allocatedBytes : -1;
     }
 
-    public String getLastFailure() {
-      return lastFailure;
+    /** GC pause time that overlapped the attempt while it ran. */
+    public long getGcNanos() {
+      return gcNanos;
+    }
+
+    public double getWallTimeMs() {
+      return wallTimeMs;
+    }
+
+    public double getCpuTimeMs() {
+      return cpuTimeMs;
     }
   }
 
+  /**
+   * Per-test record. All outcome state lives in one immutable {@link Snapshot} that is replaced
+   * with a compare-and-set, so parallel invocations of the same test never publish a count
+   * without its status or failure, and readers always see one consistent attempt.
+   */
   public static class Data {
 
-    private final AtomicInteger counter = new AtomicInteger(0);
-    private Throwable throwable;
-    private String lastStatus;
+    // Bound on the attempts kept per test; counts and totals still cover every attempt
+    static final int RECENT_ATTEMPTS = 16;
+
+    private final int id;
+    private final String uniqueId;
+    private final String className;
+    private final AtomicReference<Snapshot> state;
+    // Set once repeats have estimated the failure rate, otherwise null
+    private volatile FlakeEstimate flakeEstimate;
+    // Attempts already appended to the flaky history
+    private int recordedPassed;
+    private int recordedFailed;
+
+    public Data(int id, String uniqueId, String className) {
+      this(id, uniqueId, className, Snapshot.EMPTY, 0);
+    }
 
-    public void increment() {
-      counter.incrementAndGet();
+    /** Entry that starts from {@code state}, e.g. a test taken over from the {@link CompactTracker}. */
+    Data(int id, String uniqueId, String className, Snapshot state, int recordedPassed) {
+      this.id = id;
+      this.uniqueId = uniqueId;
+      this.className = className;
+      this.state = new AtomicReference<>(state);
+      this.recordedPassed = recordedPassed;
     }
 
-    public int getCount() {
-      return counter.get();
+    /** Dense numeric id, assigned once per test by {@link DataStore}. */
+    public int getId() {
+      return id;
     }
 
-    public void setThrowable(Throwable throwable) {
-      this.throwable = throwable;
+    public String getUniqueId() {
+      return uniqueId;
     }
 
-    public Throwable getThrowable() {
-      return throwable;
+    /** Human-readable name, built from the unique id on every call. */
+    public String getName() {
+      return TestNames.of(uniqueId);
+    }
+
+    public String getClassName() {
+      return className;
+    }
+
+    /**
+     * Records one finished attempt. {@code failure} is null for passed attempts, which keep the
+     * previous failure; {@code attempt} is null if the attempt was not timed.
+     *
+     * @return the state that this call installed
+     */
+    public Snapshot record(String status, FailureSnapshot failure, Attempt attempt) {
+      while (true) {
+        Snapshot current = state.get();
+        Snapshot next = current.with(1, failure != null ? 1 : 0, status,
+            failure != null ? failure : current.failure, attempt);
+        if (state.compareAndSet(current, next)) {
+          return next;
+        }
+      }
     }
 
-    public void setLastStatus(String status) {
-      this.lastStatus = status;
+    /**
+     * Adds the outcome of the same test from another fork. Fork order is unknown, so a pass in
+     * any fork wins as the last status.
+     */
+    void merge(Snapshot other) {
+      while (true) {
+        Snapshot current = state.get();
+        if (state.compareAndSet(current, current.merge(other))) {
+          return;
+        }
+      }
+    }
+
+    /** Charges a GC pause that was reported after the attempt had already finished. */
+    void addGcOverlap(long nanos, boolean failedAttempt) {
+      while (true) {
+        Snapshot current = state.get();
+        if (state.compareAndSet(current, current.withGc(nanos, failedAttempt ? nanos : 0))) {
+          return;
+        }
+      }
+    }
+
+    void setFailure(FailureSnapshot failure) {
+      while (true) {
+        Snapshot current = state.get();
+        if (state.compareAndSet(current, current.with(0, 0, current.lastStatus, failure, null))) {
+          return;
+        }
+      }
+    }
+
+    public FlakeEstimate getFlakeEstimate() {
+      return flakeEstimate;
+    }
+
+    /** Adds an estimate from further repeats, of this JVM or of another fork. */
+    synchronized void addFlakeEstimate(FlakeEstimate estimate) {
+      flakeEstimate = flakeEstimate == null ? estimate : flakeEstimate.merge(estimate);
+    }
+
+    /** The current state; read it once and use its getters for a consistent view. */
+    public Snapshot snapshot() {
+      return state.get();
+    }
+
+    synchronized FlakyHistoryStore.Outcome takeUnrecordedOutcome() {
+      Snapshot current = state.get();
+      int failed = current.failures;
+      int passed = current.count - failed;
+      if (passed == recordedPassed && failed == recordedFailed) {
+        return null;
+      }
+      int attempts = passed - recordedPassed + failed - recordedFailed;
+      FlakyHistoryStore.Outcome outcome = new FlakyHistoryStore.Outcome(getName(), passed - recordedPassed,
+          failed - recordedFailed, passedDurations(current, attempts));
+      recordedPassed = passed;
+      recordedFailed = failed;
+      return outcome;
+    }
+
+    /** Durations of the passed attempts among the newest {@code attempts}, as far as the ring reaches. */
+    private static DurationSketch passedDurations(Snapshot state, int attempts) {
+      List<Attempt> recent = state.getAttempts();
+      DurationSketch durations = null;
+      for (int i = Math.max(0, recent.size() - attempts); i < recent.size(); i++) {
+        Attempt attempt = recent.get(i);
+        if ("PASSED".equals(attempt.getStatus())) {
+          if (durations == null) {
+            durations = new DurationSketch();
+          }
+          durations.add(attempt.getWallNanos(), 1);
+        }
+      }
+      return durations;
+    }
+
+    public int getCount() {
+      return state.get().count;
     }
 
     public String getLastStatus() {
-      return lastStatus;
+      return state.get().lastStatus;
+    }
+
+    public FailureSnapshot getFailure() {
+      return state.get().failure;
+    }
+
+    public long getTotalWallNanos() {
+      return state.get().totalWallNanos;
+    }
+
+    /** Immutable outcome state of a test at one point in time. */
+    public static final class Snapshot {
+
+      static final Snapshot EMPTY = new Snapshot(0, 0, null, null, 0, 0, 0, 0, 0, 0, new Attempt[0], 0);
+
+      private final int count;
+      private final int failures;
+      private final String lastStatus;
+      private final FailureSnapshot failure;
+      private final long totalWallNanos;
+      private final long totalCpuNanos;
+      private final long maxWallNanos;
+      private final long totalAllocatedBytes;
+      private final long gcOverlapNanos;
+      private final long failedGcOverlapNanos;
+      // Ring of the most recent timed attempts; the oldest is at index head once it is full
+      private final Attempt[] recent;
+      private final int head;
+
+      private Snapshot(int count, int failures, String lastStatus, FailureSnapshot failure,
+          long totalWallNanos, long totalCpuNanos, long maxWallNanos, long totalAllocatedBytes,
+          long gcOverlapNanos, long failedGcOverlapNanos, Attempt[] recent, int head) {
+        this.count = count;
+        this.failures = failures;
+        this.lastStatus = lastStatus;
+        this.failure = failure;
+        this.totalWallNanos = totalWallNanos;
+        this.totalCpuNanos = totalCpuNanos;
+        this.maxWallNanos = maxWallNanos;
+        this.totalAllocatedBytes = totalAllocatedBytes;
+        this.gcOverlapNanos = gcOverlapNanos;
+        this.failedGcOverlapNanos = failedGcOverlapNanos;
+        this.recent = recent;
+        this.head = head;
+      }
+
+      /** State restored from a fork segment or the compact tracker; the attempts only fill the ring. */
+      static Snapshot restored(int count, int failures, String lastStatus, long totalWallNanos,
+          long totalCpuNanos, long maxWallNanos, long totalAllocatedBytes, long gcOverlapNanos,
+          long failedGcOverlapNanos, List<Attempt> attempts) {
+        Snapshot state = new Snapshot(count, failures, lastStatus, null, totalWallNanos, totalCpuNanos,
+            maxWallNanos, totalAllocatedBytes, gcOverlapNanos, failedGcOverlapNanos, EMPTY.recent, 0);
+        for (Attempt attempt : attempts) {
+          state = state.withRecent(attempt);
+        }
+        return state;
+      }
+
+      private Snapshot with(int executions, int failed, String status, FailureSnapshot lastFailure,
+          Attempt attempt) {
+        if (attempt == null) {
+          return new Snapshot(count + executions, failures + failed, status, lastFailure,
+              totalWallNanos, totalCpuNanos, maxWallNanos, totalAllocatedBytes, gcOverlapNanos,
+              failedGcOverlapNanos, recent, head);
+        }
+        return new Snapshot(count + executions, failures + failed, status, lastFailure,
+            totalWallNanos + attempt.getWallNanos(),
+            totalCpuNanos + Math.max(0, attempt.getCpuNanos()),
+            Math.max(maxWallNanos, attempt.getWallNanos()),
+            totalAllocatedBytes + Math.max(0, attempt.getAllocatedBytes()),
+            gcOverlapNanos + attempt.getGcNanos(),
+            failedGcOverlapNanos + (failed > 0 ? attempt.getGcNanos() : 0),
+            recent, head).withRecent(attempt);
+      }
+
+      private Snapshot merge(Snapshot other) {
+        // Fork order is unknown; a pass in any fork means the test eventually passed
+        String status = lastStatus == null || "PASSED".equals(other.lastStatus) ? other.lastStatus : lastStatus;
+        Snapshot next = new Snapshot(count + other.count, failures + other.failures, status, failure,
+            totalWallNanos + other.totalWallNanos, totalCpuNanos + other.totalCpuNanos,
+            Math.max(maxWallNanos, other.maxWallNanos), totalAllocatedBytes + other.totalAllocatedBytes,
+            gcOverlapNanos + other.gcOverlapNanos, failedGcOverlapNanos + other.failedGcOverlapNanos,
+            recent, head);
+        for (Attempt attempt : other.getAttempts()) {
+          next = next.withRecent(attempt);
+        }
+        return next;
+      }
+
+      private Snapshot withRecent(Attempt attempt) {
+        // Copy-on-write: the ring is at most RECENT_ATTEMPTS references
+        Attempt[] ring;
+        int nextHead = head;
+        if (recent.length < RECENT_ATTEMPTS) {
+          ring = Arrays.copyOf(recent, recent.length + 1);
+          ring[recent.length] = attempt;
+        } else {
+          ring = recent.clone();
+          ring[head] = attempt;
+          nextHead = (head + 1) % RECENT_ATTEMPTS;
+        }
+        return new Snapshot(count, failures, lastStatus, failure, totalWallNanos, totalCpuNanos,
+            maxWallNanos, totalAllocatedBytes, gcOverlapNanos, failedGcOverlapNanos, ring, nextHead);
+      }
+
+      private Snapshot withGc(long nanos, long failedNanos) {
+        return new Snapshot(count, failures, lastStatus, failure, totalWallNanos, totalCpuNanos,
+            maxWallNanos, totalAllocatedBytes, gcOverlapNanos + nanos, failedGcOverlapNanos + failedNanos,
+            recent, head);
+      }
+
+      public int getCount() {
+        return count;
+      }
+
+      public int getFailureCount() {
+        return failures;
+      }
+
+      public String getLastStatus() {
+        return lastStatus;
+      }
+
+      public FailureSnapshot getFailure() {
+        return failure;
+      }
+
+      /** The most recent attempts, oldest first, at most {@value Data#RECENT_ATTEMPTS}. */
+      public List<Attempt> getAttempts() {
+        List<Attempt> attempts = new ArrayList<>(recent.length);
+        for (int i = 0; i < recent.length; i++) {
+          attempts.add(recent[(head + i) % recent.length]);
+        }
+        return attempts;
+      }
+
+      public long getTotalWallNanos() {
+        return totalWallNanos;
+      }
+
+      public long getTotalCpuNanos() {
+        return totalCpuNanos;
+      }
+
+      public long getMaxWallNanos() {
+        return maxWallNanos;
+      }
+
+      public long getTotalAllocatedBytes() {
+        return totalAllocatedBytes;
+      }
+
+      /** GC pause time that overlapped any attempt of the test. */
+      public long getGcOverlapNanos() {
+        return gcOverlapNanos;
+      }
+
+      /** GC pause time that overlapped failed attempts of the test. */
+      public long getFailedGcOverlapNanos() {
+        return failedGcOverlapNanos;
+      }
     }
   }
 }
@@ -0,0 +1,407 @@
+package com.example.ecommerce;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tests that ran at the same time as failing attempts, to point at shared state behind flakes
+ * under parallel execution.
+ *
+ * <p>Every thread keeps its finished attempts as [start, end) intervals in its own ring. A
+ * thread runs one attempt at a time, so its ring is sorted by start and by end alike. Only the
+ * owning thread writes a ring, without a lock, so appending never waits for another thread, not
+ * even for one that is reading the ring. When an attempt fails, each other ring is binary
+ * searched for the first interval ending after the failure started, and walked from there; the
+ * attempts still running overlap it too. A query therefore costs a binary search per thread plus
+ * the overlapping attempts, however many attempts the suite has run. A failure that outlasts
+ * {@value #RING_SIZE} attempts of another thread misses that thread's oldest ones.
+ *
+ * <p>Co-occurrence counts are kept per failing test and summed over builds in
+ * {@code overlaps.bin} in the history directory; without the history they cover this JVM only.
+ * Execution order is mostly stable, so the same neighbours run next to a test whether it fails
+ * or passes. Once a test has failed, its passed attempts are therefore counted as well, and
+ * partners are ranked by how much more often they ran during its failures than during its
+ * passes.
+ */
+final class OverlapIndex {
+
+  // Finished attempts kept per thread
+  static final int RING_SIZE = 4096;
+  // Partners kept per failing test in the history file
+  private static final int SAVED_PARTNERS = 64;
+
+  private static final int FILE_MAGIC = 0x4f564c50;
+  private static final int FILE_VERSION = 1;
+  private static final String FILE = "overlaps.bin";
+  private static final String LOCK_FILE = "overlaps.lock";
+
+  private final List<Ring> rings = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<Ring> ring = ThreadLocal.withInitial(this::newRing);
+  // Failing test -> co-occurrences in this JVM, keyed by unique id like their partners
+  private final Map<String, Overlaps> current = new ConcurrentHashMap<>();
+  // Failing test -> co-occurrences in earlier builds
+  private volatile Map<String, Overlaps> previous = Collections.emptyMap();
+
+  /**
+   * Adds a finished attempt of the current thread. A failure, and a pass of a test that has
+   * failed before, also counts the tests that ran during it, including those still running.
+   */
+  void finished(String uniqueId, long startNanos, long endNanos, boolean failed,
+      Map<String, AttemptClock> inFlight) {
+    Ring own = ring.get();
+    Overlaps overlaps = current.get(uniqueId);
+    if (failed || overlaps != null || previous.containsKey(uniqueId)) {
+      Set<String> partners = new HashSet<>();
+      for (Ring other : rings) {
+        if (other != own) {
+          other.collect(startNanos, endNanos, partners);
+        }
+      }
+      for (Map.Entry<String, AttemptClock> running : inFlight.entrySet()) {
+        if (running.getValue().getStartNanos() < endNanos) {
+          partners.add(running.getKey());
+        }
+      }
+      // Another invocation of the same test is not a different test sharing its state
+      partners.remove(uniqueId);
+      if (overlaps == null) {
+        overlaps = current.computeIfAbsent(uniqueId, key -> new Overlaps());
+      }
+      overlaps.add(partners, failed);
+    }
+    own.add(uniqueId, startNanos, endNanos);
+  }
+
+  /** Tests that failed in this JVM, each with the partners most specific to its failures. */
+  List<FailureOverlap> getFailureOverlaps(int limit) {
+    Map<String, Overlaps> earlier = previous;
+    List<FailureOverlap> result = new ArrayList<>();
+    for (Map.Entry<String, Overlaps> entry : current.entrySet()) {
+      Overlaps now = entry.getValue().copy();
+      if (now.failedAttempts > 0) {
+        result.add(new FailureOverlap(TestNames.of(entry.getKey()), now, earlier.get(entry.getKey()), limit));
+      }
+    }
+    result.sort(Comparator.comparingInt(FailureOverlap::getFailedAttempts).reversed()
+        .thenComparing(FailureOverlap::getTestName));
+    return result;
+  }
+
+  /** Reads the counts of earlier builds; a missing or unreadable file starts from none. */
+  void load(Path directory) {
+    Path file = directory.resolve(FILE);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      previous = read(in);
+    } catch (NoSuchFileException e) {
+      // First run
+    } catch (IOException e) {
+      System.err.println("Ignoring unreadable test overlap history " + file + ": " + e.getMessage());
+    }
+  }
+
+  /** Adds this JVM's counts to the file, under a lock shared with the other forks. */
+  void save(Path directory) throws IOException {
+    if (current.isEmpty()) {
+      return;
+    }
+    try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      FileLock lock = lockChannel.lock();
+      try {
+        Path file = directory.resolve(FILE);
+        Map<String, Overlaps> merged = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+          merged.putAll(read(in));
+        } catch (NoSuchFileException e) {
+          // First run
+        } catch (IOException e) {
+          System.err.println("Replacing unreadable test overlap history " + file + ": " + e.getMessage());
+        }
+        for (Map.Entry<String, Overlaps> entry : current.entrySet()) {
+          merged.computeIfAbsent(entry.getKey(), key -> new Overlaps()).merge(entry.getValue().copy());
+        }
+        Path temp = directory.resolve(FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+          write(out, merged);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  private Ring newRing() {
+    Ring created = new Ring();
+    rings.add(created);
+    return created;
+  }
+
+  private static Map<String, Overlaps> read(DataInputStream in) throws IOException {
+    if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+      throw new IOException("unknown overlap file format");
+    }
+    int tests = in.readInt();
+    Map<String, Overlaps> result = new HashMap<>(tests * 2);
+    for (int i = 0; i < tests; i++) {
+      String uniqueId = in.readUTF();
+      Overlaps overlaps = new Overlaps();
+      overlaps.failedAttempts = in.readInt();
+      overlaps.passedAttempts = in.readInt();
+      int partners = in.readUnsignedShort();
+      for (int j = 0; j < partners; j++) {
+        overlaps.partners.put(in.readUTF(), new int[] {in.readInt(), in.readInt()});
+      }
+      result.put(uniqueId, overlaps);
+    }
+    return result;
+  }
+
+  private static void write(DataOutputStream out, Map<String, Overlaps> tests) throws IOException {
+    out.writeInt(FILE_MAGIC);
+    out.writeInt(FILE_VERSION);
+    out.writeInt(tests.size());
+    for (Map.Entry<String, Overlaps> entry : tests.entrySet()) {
+      Overlaps overlaps = entry.getValue();
+      out.writeUTF(entry.getKey());
+      out.writeInt(overlaps.failedAttempts);
+      out.writeInt(overlaps.passedAttempts);
+      List<Partner> top = overlaps.top(SAVED_PARTNERS, null);
+      out.writeShort(top.size());
+      for (Partner partner : top) {
+        int[] counts = overlaps.partners.get(partner.uniqueId);
+        out.writeUTF(partner.uniqueId);
+        out.writeInt(counts[0]);
+        out.writeInt(counts[1]);
+      }
+    }
+  }
+
+  /**
+   * Finished attempts of one thread, oldest first, overwritten once full. Written by its thread
+   * only; other threads read it without a lock. The writer claims an index before it overwrites
+   * a slot and publishes it afterwards, so a reader skips slots that were overwritten while it
+   * read them.
+   */
+  private static final class Ring {
+
+    private final AtomicReferenceArray<String> uniqueIds = new AtomicReferenceArray<>(RING_SIZE);
+    private final AtomicLongArray starts = new AtomicLongArray(RING_SIZE);
+    private final AtomicLongArray ends = new AtomicLongArray(RING_SIZE);
+    // Attempts whose slot is being written or has been; at most one more than added
+    private volatile long claimed;
+    // Attempts ever added; the newest is at (added - 1) % RING_SIZE
+    private volatile long added;
+
+    void add(String uniqueId, long startNanos, long endNanos) {
+      long index = added;
+      int slot = (int) (index % RING_SIZE);
+      claimed = index + 1;
+      uniqueIds.set(slot, uniqueId);
+      starts.set(slot, startNanos);
+      ends.set(slot, endNanos);
+      added = index + 1;
+    }
+
+    void collect(long startNanos, long endNanos, Set<String> partners) {
+      long newest = added;
+      // First attempt that ended after the failure started; ends grow with the index
+      long low = Math.max(0, newest - RING_SIZE);
+      long high = newest;
+      while (low < high) {
+        long middle = (low + high) >>> 1;
+        if (ends.get((int) (middle % RING_SIZE)) <= startNanos) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      for (long i = low; i < newest; i++) {
+        int slot = (int) (i % RING_SIZE);
+        String uniqueId = uniqueIds.get(slot);
+        long start = starts.get(slot);
+        // Overwritten by a newer attempt while this was read; only happens to the oldest slots
+        if (i < claimed - RING_SIZE) {
+          continue;
+        }
+        if (start >= endNanos) {
+          break;
+        }
+        partners.add(uniqueId);
+      }
+    }
+  }
+
+  /** Attempts of one test that has failed, and how many of them each other test overlapped. */
+  private static final class Overlaps {
+
+    private int failedAttempts;
+    private int passedAttempts;
+    // Partner unique id -> {failed attempts, passed attempts} it overlapped
+    private final Map<String, int[]> partners = new HashMap<>();
+
+    synchronized void add(Set<String> overlapping, boolean failed) {
+      if (failed) {
+        failedAttempts++;
+      } else {
+        passedAttempts++;
+      }
+      for (String partner : overlapping) {
+        partners.computeIfAbsent(partner, key -> new int[2])[failed ? 0 : 1]++;
+      }
+    }
+
+    synchronized void merge(Overlaps other) {
+      failedAttempts += other.failedAttempts;
+      passedAttempts += other.passedAttempts;
+      for (Map.Entry<String, int[]> partner : other.partners.entrySet()) {
+        int[] counts = partners.computeIfAbsent(partner.getKey(), key -> new int[2]);
+        counts[0] += partner.getValue()[0];
+        counts[1] += partner.getValue()[1];
+      }
+    }
+
+    Overlaps copy() {
+      Overlaps copy = new Overlaps();
+      copy.merge(this);
+      return copy;
+    }
+
+    /**
+     * Partners that overlapped at least one failure, by how much more often they ran during a
+     * failure than during a pass, then by co-occurrences. {@code thisBuild} adds its counts.
+     */
+    synchronized List<Partner> top(int limit, Overlaps thisBuild) {
+      List<Partner> ranked = new ArrayList<>();
+      for (Map.Entry<String, int[]> partner : partners.entrySet()) {
+        int[] counts = partner.getValue();
+        if (counts[0] == 0) {
+          continue;
+        }
+        int[] now = thisBuild != null ? thisBuild.partners.get(partner.getKey()) : null;
+        ranked.add(new Partner(partner.getKey(), counts[0], now != null ? now[0] : 0,
+            counts[0] / (double) failedAttempts,
+            passedAttempts > 0 ? counts[1] / (double) passedAttempts : null));
+      }
+      ranked.sort(Comparator.comparingDouble(Partner::getExcessShare).reversed()
+          .thenComparing(Comparator.comparingInt(Partner::getCoOccurrences).reversed())
+          .thenComparing(Partner::getTestName));
+      return ranked.subList(0, Math.min(limit, ranked.size()));
+    }
+  }
+
+  // DTO class for JSON serialization
+  static class FailureOverlap {
+    private final String testName;
+    private final int failedAttempts;
+    private final int historicalFailedAttempts;
+    private final int historicalPassedAttempts;
+    private final List<Partner> concurrentTests;
+
+    FailureOverlap(String testName, Overlaps now, Overlaps before, int limit) {
+      Overlaps total = now.copy();
+      if (before != null) {
+        total.merge(before);
+      }
+      this.testName = testName;
+      this.failedAttempts = now.failedAttempts;
+      this.historicalFailedAttempts = total.failedAttempts;
+      this.historicalPassedAttempts = total.passedAttempts;
+      this.concurrentTests = total.top(limit, now);
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    /** Failed attempts in this JVM. */
+    public int getFailedAttempts() {
+      return failedAttempts;
+    }
+
+    /** Failed attempts in this JVM and in the earlier builds of the history. */
+    public int getHistoricalFailedAttempts() {
+      return historicalFailedAttempts;
+    }
+
+    /** Passed attempts since the test first failed, over the same builds. */
+    public int getHistoricalPassedAttempts() {
+      return historicalPassedAttempts;
+    }
+
+    /** Tests that ran during its failures, most specific to the failures first. */
+    public List<Partner> getConcurrentTests() {
+      return concurrentTests;
+    }
+  }
+
+  // DTO class for JSON serialization
+  static class Partner {
+    private final transient String uniqueId;
+    private final String testName;
+    private final int coOccurrences;
+    private final int coOccurrencesThisBuild;
+    private final double failureShare;
+    // Omitted while the failing test has no passed attempts to compare with
+    private final Double passShare;
+
+    Partner(String uniqueId, int coOccurrences, int coOccurrencesThisBuild, double failureShare,
+        Double passShare) {
+      this.uniqueId = uniqueId;
+      this.testName = TestNames.of(uniqueId);
+      this.coOccurrences = coOccurrences;
+      this.coOccurrencesThisBuild = coOccurrencesThisBuild;
+      this.failureShare = failureShare;
+      this.passShare = passShare;
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    /** Failed attempts it overlapped, over all builds. */
+    public int getCoOccurrences() {
+      return coOccurrences;
+    }
+
+    public int getCoOccurrencesThisBuild() {
+      return coOccurrencesThisBuild;
+    }
+
+    /** Share of the failing test's failed attempts that it overlapped. */
+    public double getFailureShare() {
+      return failureShare;
+    }
+
+    /** Share of the failing test's passed attempts that it overlapped. */
+    public Double getPassShare() {
+      return passShare;
+    }
+
+    double getExcessShare() {
+      return failureShare - (passShare != null ? passShare : 0);
+    }
+  }
+}
@@ -0,0 +1,429 @@
+package com.example.ecommerce;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the module reports of a whole reactor into one flaky-test summary.
+ *
+ * <p>The aggregator walks the build tree and takes the newest {@code junit5-retry-report-*}
+ * file in every {@code target/} directory (JSON or binary, gzipped or not). Reports are parsed
+ * in parallel with streaming readers. Only the fields of the summary are kept: test names,
+ * counts, failure fingerprints and duration regressions. Attempts and stack traces are skipped
+ * while parsing. Memory therefore grows with the number of distinct flaky tests and failures,
+ * not with report size or module count.
+ *
+ * <pre>java -cp junit-listener.jar:gson.jar com.example.ecommerce.ReportAggregator &lt;root-dir&gt; &lt;summary-file&gt;</pre>
+ */
+public final class ReportAggregator {
+
+  static final String REPORT_PREFIX = "junit5-retry-report-";
+
+  private static final Gson GSON = new Gson();
+
+  private final Map<String, MergedTest> tests = new ConcurrentHashMap<>();
+  private final Map<String, MergedFailure> failures = new ConcurrentHashMap<>();
+  private final Map<String, MergedRegression> regressions = new ConcurrentHashMap<>();
+  private final Map<String, ModuleSummary> modules = new ConcurrentHashMap<>();
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length != 2) {
+      System.err.println("Usage: ReportAggregator <root-dir> <summary-file>");
+      System.exit(2);
+    }
+    Path root = Paths.get(args[0]);
+    Path summary = Paths.get(args[1]);
+    ReportAggregator aggregator = new ReportAggregator();
+    aggregator.aggregate(root, Runtime.getRuntime().availableProcessors());
+    aggregator.write(summary);
+    System.out.println("Merged " + aggregator.modules.size() + " module report(s) with "
+        + aggregator.tests.size() + " flaky test(s) into " + summary);
+  }
+
+  /** Finds and parses all module reports below {@code root} on {@code threads} threads. */
+  void aggregate(Path root, int threads) throws IOException, InterruptedException {
+    // Bounded queue plus caller-runs: the directory walk never gets far ahead of the parsers
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+          if (!dir.equals(root) && (name.startsWith(".") || "node_modules".equals(name))) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          if ("target".equals(name)) {
+            Path report = latestReport(dir);
+            if (report != null) {
+              String module = dir.getParent() != null ? root.relativize(dir.getParent()).toString() : "";
+              executor.execute(() -> readModule(module.isEmpty() ? "." : module, report));
+            }
+            // Fork segments and build output below target/ are never module reports
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  void write(Path summaryFile) throws IOException {
+    Path temp = summaryFile.resolveSibling(summaryFile.getFileName() + ".tmp");
+    try (ReportWriter writer = ReportWriter.open(temp, true)) {
+      writer.beginSection("flakyTests");
+      List<MergedTest> sortedTests = new ArrayList<>(tests.values());
+      // Tests flaky in the most modules first
+      sortedTests.sort(Comparator.comparingInt((MergedTest it) -> it.modules.size()).reversed()
+          .thenComparing(it -> it.testName));
+      for (MergedTest test : sortedTests) {
+        writer.writeEntry(test);
+      }
+      writer.endSection();
+
+      writer.beginSection("failures");
+      List<MergedFailure> sortedFailures = new ArrayList<>(failures.values());
+      sortedFailures.sort(Comparator.comparingLong(MergedFailure::getOccurrences).reversed());
+      for (MergedFailure failure : sortedFailures) {
+        writer.writeEntry(failure);
+      }
+      writer.endSection();
+
+      writer.beginSection("durationRegressions");
+      List<MergedRegression> sortedRegressions = new ArrayList<>(regressions.values());
+      sortedRegressions.sort(Comparator.comparingDouble(MergedRegression::getMinPValue)
+          .thenComparing(it -> it.testName));
+      for (MergedRegression regression : sortedRegressions) {
+        writer.writeEntry(regression);
+      }
+      writer.endSection();
+
+      writer.beginSection("modules");
+      List<ModuleSummary> sortedModules = new ArrayList<>(modules.values());
+      sortedModules.sort(Comparator.comparing(ModuleSummary::getModule));
+      for (ModuleSummary module : sortedModules) {
+        writer.writeEntry(module);
+      }
+      writer.endSection();
+    }
+    Files.move(temp, summaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static Path latestReport(Path targetDir) throws IOException {
+    Path latest = null;
+    FileTime latestTime = null;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(targetDir, REPORT_PREFIX + "*")) {
+      for (Path path : stream) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(".tmp") || !Files.isRegularFile(path)) {
+          continue;
+        }
+        FileTime modified = Files.getLastModifiedTime(path);
+        if (latestTime == null || modified.compareTo(latestTime) > 0) {
+          latest = path;
+          latestTime = modified;
+        }
+      }
+    }
+    return latest;
+  }
+
+  private void readModule(String module, Path report) {
+    ModuleSummary summary = new ModuleSummary(module, report.toString());
+    try (BufferedInputStream in = ReportConverter.openReport(report)) {
+      if (BinaryReport.isBinary(in)) {
+        readBinary(in, summary);
+      } else {
+        readJson(in, summary);
+      }
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Skipping unreadable report " + report + ": " + e);
+      summary.error = e.toString();
+    }
+    modules.put(module, summary);
+  }
+
+  private void readJson(InputStream in, ModuleSummary summary) throws IOException {
+    try (JsonReader json = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      json.beginObject();
+      while (json.hasNext()) {
+        String section = json.nextName();
+        if (!isSummarySection(section)) {
+          json.skipValue();
+          continue;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+          // Fields missing from the DTOs, such as attempts and traces, are skipped unparsed
+          if ("flakyTests".equals(section)) {
+            add(summary, GSON.<FlakyEntry>fromJson(json, FlakyEntry.class));
+          } else if ("failures".equals(section)) {
+            add(summary, GSON.<FailureEntry>fromJson(json, FailureEntry.class));
+          } else {
+            add(summary, GSON.<RegressionEntry>fromJson(json, RegressionEntry.class));
+          }
+        }
+        json.endArray();
+      }
+      json.endObject();
+    }
+  }
+
+  private void readBinary(InputStream in, ModuleSummary summary) throws IOException {
+    BinaryReport.Reader reader = new BinaryReport.Reader(in);
+    for (String section = reader.nextSection(); section != null; section = reader.nextSection()) {
+      if (!isSummarySection(section)) {
+        continue;
+      }
+      for (JsonElement entry = reader.nextEntry(); entry != null; entry = reader.nextEntry()) {
+        if ("flakyTests".equals(section)) {
+          add(summary, GSON.fromJson(entry, FlakyEntry.class));
+        } else if ("failures".equals(section)) {
+          add(summary, GSON.fromJson(entry, FailureEntry.class));
+        } else {
+          add(summary, GSON.fromJson(entry, RegressionEntry.class));
+        }
+      }
+    }
+  }
+
+  private static boolean isSummarySection(String section) {
+    return "flakyTests".equals(section) || "failures".equals(section) || "durationRegressions".equals(section);
+  }
+
+  private void add(ModuleSummary summary, FlakyEntry entry) {
+    summary.flakyTests++;
+    tests.computeIfAbsent(entry.testName, MergedTest::new).add(summary.module, entry);
+  }
+
+  private void add(ModuleSummary summary, FailureEntry entry) {
+    summary.failures++;
+    failures.computeIfAbsent(entry.fingerprint, key -> new MergedFailure(entry)).add(summary.module, entry);
+  }
+
+  private void add(ModuleSummary summary, RegressionEntry entry) {
+    summary.durationRegressions++;
+    regressions.computeIfAbsent(entry.testName, MergedRegression::new).add(summary.module, entry);
+  }
+
+  // DTO class for JSON serialization
+  private static class FlakyEntry {
+    private String testName;
+    private int executionCount;
+    private String lastFailureFingerprint;
+    private Double historicalFlakeRate;
+  }
+
+  // DTO class for JSON serialization
+  private static class FailureEntry {
+    private String fingerprint;
+    private String exceptionClass;
+    private String message;
+    private long occurrences;
+  }
+
+  // DTO class for JSON serialization
+  private static class RegressionEntry {
+    private String testName;
+    private double wallTimeMs;
+    private double baselineMedianMs;
+    private double ratio;
+    private double pValue;
+  }
+
+  // DTO class for JSON serialization
+  private static class MergedTest {
+    private final String testName;
+    private final TreeSet<String> modules = new TreeSet<>();
+    private int executionCount;
+    private final TreeSet<String> failureFingerprints = new TreeSet<>();
+    private Double maxHistoricalFlakeRate;
+
+    MergedTest(String testName) {
+      this.testName = testName;
+    }
+
+    synchronized void add(String module, FlakyEntry entry) {
+      modules.add(module);
+      executionCount += entry.executionCount;
+      if (entry.lastFailureFingerprint != null) {
+        failureFingerprints.add(entry.lastFailureFingerprint);
+      }
+      if (entry.historicalFlakeRate != null
+          && (maxHistoricalFlakeRate == null || entry.historicalFlakeRate > maxHistoricalFlakeRate)) {
+        maxHistoricalFlakeRate = entry.historicalFlakeRate;
+      }
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    public synchronized List<String> getModules() {
+      return new ArrayList<>(modules);
+    }
+
+    public synchronized int getExecutionCount() {
+      return executionCount;
+    }
+
+    public synchronized List<String> getFailureFingerprints() {
+      return new ArrayList<>(failureFingerprints);
+    }
+
+    public synchronized Double getMaxHistoricalFlakeRate() {
+      return maxHistoricalFlakeRate;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class MergedFailure {
+    private final String fingerprint;
+    private final String exceptionClass;
+    private final String message;
+    private long occurrences;
+    private final TreeSet<String> modules = new TreeSet<>();
+
+    MergedFailure(FailureEntry first) {
+      this.fingerprint = first.fingerprint;
+      this.exceptionClass = first.exceptionClass;
+      this.message = first.message;
+    }
+
+    synchronized void add(String module, FailureEntry entry) {
+      occurrences += entry.occurrences;
+      modules.add(module);
+    }
+
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    public String getExceptionClass() {
+      return exceptionClass;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    public synchronized long getOccurrences() {
+      return occurrences;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class MergedRegression {
+    private final String testName;
+    private final TreeSet<String> modules = new TreeSet<>();
+    private double maxRatio;
+    private double wallTimeMs;
+    private double baselineMedianMs;
+    private double minPValue = 1;
+
+    MergedRegression(String testName) {
+      this.testName = testName;
+    }
+
+    synchronized void add(String module, RegressionEntry entry) {
+      modules.add(module);
+      // Durations of the module with the largest slowdown
+      if (entry.ratio > maxRatio) {
+        maxRatio = entry.ratio;
+        wallTimeMs = entry.wallTimeMs;
+        baselineMedianMs = entry.baselineMedianMs;
+      }
+      minPValue = Math.min(minPValue, entry.pValue);
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    public synchronized List<String> getModules() {
+      return new ArrayList<>(modules);
+    }
+
+    public synchronized double getMaxRatio() {
+      return maxRatio;
+    }
+
+    public synchronized double getWallTimeMs() {
+      return wallTimeMs;
+    }
+
+    public synchronized double getBaselineMedianMs() {
+      return baselineMedianMs;
+    }
+
+    public synchronized double getMinPValue() {
+      return minPValue;
+    }
+  }
+
+  // DTO class for JSON serialization
+  private static class ModuleSummary {
+    private final String module;
+    private final String report;
+    private int flakyTests;
+    private int failures;
+    private int durationRegressions;
+    private String error;
+
+    ModuleSummary(String module, String report) {
+      this.module = module;
+      this.report = report;
+    }
+
+    public String getModule() {
+      return module;
+    }
+
+    public String getReport() {
+      return report;
+    }
+
+    public int getFlakyTests() {
+      return flakyTests;
+    }
+
+    public int getFailures() {
+      return failures;
+    }
+
+    public int getDurationRegressions() {
+      return durationRegressions;
+    }
+
+    public String getError() {
+      return error;
+    }
+  }
+}
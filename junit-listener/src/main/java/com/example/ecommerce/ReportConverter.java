@@ -0,0 +1,71 @@
+package com.example.ecommerce;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts a binary test retry report (optionally gzipped) to pretty-printed JSON. Gzip is
+ * detected from the file content, not its name. The conversion streams, so reports of any size
+ * convert in bounded memory apart from their string table:
+ *
+ * <pre>java -cp junit-listener.jar:gson.jar com.example.ecommerce.ReportConverter &lt;report.bin[.gz]&gt; [&lt;report.json&gt;]</pre>
+ *
+ * Without an output file the JSON is written to standard output.
+ */
+public final class ReportConverter {
+
+  private ReportConverter() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: ReportConverter <binary-report> [<json-file>]");
+      System.exit(2);
+    }
+    Path input = Paths.get(args[0]);
+    if (args.length == 2) {
+      try (OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+        convert(input, out);
+      }
+    } else {
+      convert(input, System.out);
+      System.out.flush();
+    }
+  }
+
+  /** Writes the JSON form of a binary report to {@code out}, which is flushed but not closed. */
+  public static void convert(Path binaryReport, OutputStream out) throws IOException {
+    try (InputStream in = openReport(binaryReport)) {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+          ReportWriter.BUFFER_SIZE);
+      JsonWriter json = new JsonWriter(writer);
+      json.setIndent("  ");
+      BinaryReport.toJson(in, json);
+      json.flush();
+    }
+  }
+
+  /** Opens a report file, unwrapping gzip if the content is gzipped. */
+  static BufferedInputStream openReport(Path file) throws IOException {
+    BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), ReportWriter.BUFFER_SIZE);
+    in.mark(2);
+    int first = in.read();
+    int second = in.read();
+    in.reset();
+    if (first == 0x1f && second == 0x8b) {
+      return new BufferedInputStream(new GZIPInputStream(in, ReportWriter.BUFFER_SIZE), ReportWriter.BUFFER_SIZE);
+    }
+    return in;
+  }
+}
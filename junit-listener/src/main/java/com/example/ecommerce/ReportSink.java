@@ -0,0 +1,109 @@
+package com.example.ecommerce;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs report and console output on a single background thread, so finishing a test plan only
+ * enqueues work and the next Surefire retry plan can start right away.
+ *
+ * <p>Tasks run in submission order. The queue is bounded; if the writer falls behind, the
+ * submitting thread blocks instead of buffering without limit. {@link #flush()} is called when
+ * the launcher session closes and {@link #close()} from a shutdown hook, so nothing that was
+ * submitted is lost when the fork exits.
+ */
+final class ReportSink {
+
+  private static final int QUEUE_CAPACITY = 64;
+  private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+  private static final Runnable STOP = () -> { };
+
+  private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private Thread writer;
+  private boolean closed;
+
+  /** Queues a task for the writer thread; runs it on the caller once the sink is closed. */
+  synchronized void submit(Runnable task) {
+    if (closed) {
+      runQuietly(task);
+      return;
+    }
+    if (writer == null) {
+      writer = new Thread(this::drain, "junit5-watcher-report");
+      // Never keeps the JVM alive; the shutdown hook drains what is left
+      writer.setDaemon(true);
+      writer.start();
+    }
+    try {
+      queue.put(task);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      runQuietly(task);
+    }
+  }
+
+  /** Waits until every task submitted so far has run. */
+  void flush() {
+    CountDownLatch done = new CountDownLatch(1);
+    submit(done::countDown);
+    try {
+      if (!done.await(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        System.err.println("Timed out waiting for the test retry report to be written");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Runs the remaining tasks and stops the writer thread. Later tasks run on the caller. */
+  synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (writer == null) {
+      return;
+    }
+    try {
+      queue.put(STOP);
+      writer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // Only reached with tasks left if the writer timed out or died
+    List<Runnable> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    for (Runnable task : remaining) {
+      if (task != STOP) {
+        runQuietly(task);
+      }
+    }
+  }
+
+  private void drain() {
+    try {
+      while (true) {
+        Runnable task = queue.take();
+        if (task == STOP) {
+          return;
+        }
+        runQuietly(task);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void runQuietly(Runnable task) {
+    try {
+      task.run();
+    } catch (RuntimeException e) {
+      System.err.println("Failed to write test retry report: " + e);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.ecommerce;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a module report to disk one entry at a time, so memory stays bounded by the
+ * largest single entry instead of the whole report.
+ *
+ * <p>Layout: a top-level object whose members are named sections, each an array of entries.
+ * The layout is written either as JSON or in the compact {@link BinaryReport} format, and
+ * optionally gzipped.
+ */
+abstract class ReportWriter implements Closeable {
+
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Opens an uncompressed JSON writer. */
+  static ReportWriter open(Path file, boolean prettyPrint) throws IOException {
+    return new Json(openStream(file, false), prettyPrint);
+  }
+
+  /** Opens a writer in the format and compression selected by the configuration. */
+  static ReportWriter open(Path file, WatcherConfig config) throws IOException {
+    OutputStream out = openStream(file, config.isReportGzip());
+    if (config.isBinaryReport()) {
+      return new BinaryReport.Writer(out);
+    }
+    return new Json(out, config.isPrettyPrint());
+  }
+
+  /** File name suffix for reports written with this configuration. */
+  static String fileExtension(WatcherConfig config) {
+    String extension = config.isBinaryReport() ? BinaryReport.EXTENSION : ".txt";
+    return config.isReportGzip() ? extension + ".gz" : extension;
+  }
+
+  private static OutputStream openStream(Path file, boolean gzip) throws IOException {
+    FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    OutputStream out = Channels.newOutputStream(channel);
+    return gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+  }
+
+  abstract void beginSection(String name) throws IOException;
+
+  abstract void writeEntry(Object entry) throws IOException;
+
+  abstract void endSection() throws IOException;
+
+  private static final class Json extends ReportWriter {
+
+    private final Gson gson = new Gson();
+    private final JsonWriter json;
+
+    Json(OutputStream out, boolean prettyPrint) throws IOException {
+      this.json = new JsonWriter(new BufferedWriter(
+          new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+      if (prettyPrint) {
+        json.setIndent("  ");
+      }
+      json.beginObject();
+    }
+
+    @Override
+    void beginSection(String name) throws IOException {
+      json.name(name).beginArray();
+    }
+
+    @Override
+    void writeEntry(Object entry) throws IOException {
+      gson.toJson(entry, entry.getClass(), json);
+    }
+
+    @Override
+    void endSection() throws IOException {
+      json.endArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        json.endObject();
+      } finally {
+        json.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
+import org.opentest4j.TestAbortedException;
+
+/**
+ * Retries a failing test method right away, in the same JVM, test instance and extension
+ * context, instead of waiting for a Surefire rerun round with its own discovery and test plan.
+ *
+ * <p>Enabled with {@code junit5.watcher.retry.count=N} (0, the default, leaves retries to
+ * Surefire). Every failed attempt except the last is recorded in {@link DataStore} here; the
+ * final outcome reaches {@link MyTestWatcher} through JUnit as usual, so a test that fails and
+ * then passes is reported as flaky exactly like a Surefire rerun.
+ *
+ * <p>{@link Invocation#proceed()} may only be called once, so retries call the test method
+ * reflectively with the original instance and resolved arguments. Before every retry the
+ * {@code @AfterEach} methods tear down the failed attempt and the {@code @BeforeEach} methods set
+ * up the next one, with their parameters resolved by JUnit; the last attempt is torn down by JUnit
+ * as usual. Extension callbacks ({@code BeforeEachCallback}, {@code AfterEachCallback}) and
+ * interceptors registered after this one still run once around all attempts, so tests whose
+ * per-test state comes from such an extension should leave retries to Surefire. A
+ * {@code @Timeout} bounds all attempts together, since JUnit's timeout extension wraps this
+ * interceptor. Aborted tests (failed assumptions) are never retried.
+ *
+ * <p>With {@code junit5.watcher.confidence.maxRuns=N} a flaky test is repeated, to estimate how
+ * often it fails: two reruns cannot tell a test that fails 1% of the time from one that is
+ * broken. Only tests that have both failed and passed are repeated: the failing test passed
+ * before in this session or on a retry, or was flaky in the history. For any other test repeats
+ * would only confirm a deterministic failure. Repeats stop once the {@link FlakeEstimate} interval
+ * settles, or after N runs. Every repeat is recorded as an attempt. The last one is left to
+ * JUnit, so once the interval has settled a test that passed before runs until its next pass,
+ * and the test fails only if no repeat passed. Repeats run one after another on the test's own
+ * instance, with the fixtures run again in between like retries.
+ */
+public class RetryInterceptor implements InvocationInterceptor {
+
+  @Override
+  public void interceptTestMethod(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+      ExtensionContext extensionContext) throws Throwable {
+    proceedWithRetries(invocation, invocationContext, extensionContext);
+  }
+
+  @Override
+  public void interceptTestTemplateMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    proceedWithRetries(invocation, invocationContext, extensionContext);
+  }
+
+  private static void proceedWithRetries(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    WatcherConfig config = DataStore.instance.getConfig();
+    int retries = config.getRetryCount();
+    if (retries <= 0 && config.getConfidenceMaxRuns() <= 0) {
+      invocation.proceed();
+      return;
+    }
+
+    Throwable failure;
+    try {
+      invocation.proceed();
+      return;
+    } catch (TestAbortedException e) {
+      throw e;
+    } catch (Throwable e) {
+      failure = e;
+    }
+
+    Rerun rerun = new Rerun(invocationContext, extensionContext);
+    boolean repeats = config.getConfidenceMaxRuns() > 0;
+    if (repeats && isFlaky(extensionContext, config)) {
+      repeatUntilSettled(rerun, extensionContext, failure, config);
+      return;
+    }
+    for (int retry = 1; retry <= retries; retry++) {
+      rethrowIfFatal(failure);
+      MyTestWatcher.recordFailure(extensionContext, failure);
+      failure = rerun.run();
+      if (failure == null) {
+        // Failed and passed now, so worth repeating
+        if (repeats) {
+          repeatUntilSettled(rerun, extensionContext, null, config);
+        }
+        return;
+      }
+    }
+    // The last failure is reported by JUnit and recorded by MyTestWatcher.testFailed
+    throw failure;
+  }
+
+  /** Whether the test, failing now, has passed before in this session or was flaky in an earlier one. */
+  private static boolean isFlaky(ExtensionContext extensionContext, WatcherConfig config) {
+    String uniqueId = extensionContext.getUniqueId();
+    CompactTracker compact = DataStore.instance.getCompactTracker();
+    if (compact != null && compact.getCount(uniqueId) > 0) {
+      return true;
+    }
+    Data data = DataStore.instance.getTracker().get(uniqueId);
+    if (data != null) {
+      Data.Snapshot state = data.snapshot();
+      if (state.getCount() > state.getFailureCount()) {
+        return true;
+      }
+    }
+    FlakyHistoryStore history = DataStore.instance.getHistory();
+    return config.isHistoryEnabled() && history != null && history.flakeRate(TestNames.of(uniqueId)) > 0;
+  }
+
+  private static void repeatUntilSettled(Rerun rerun, ExtensionContext extensionContext, Throwable failure,
+      WatcherConfig config) throws Throwable {
+    String testName = TestNames.of(extensionContext.getUniqueId());
+    int maxRuns = config.getConfidenceMaxRuns();
+    int runs = 0;
+    int failures = 0;
+    int looks = 0;
+    FlakeEstimate estimate = null;
+    while (true) {
+      rethrowIfFatal(failure);
+      // The previous run is recorded here unless it is the last one, which JUnit reports
+      if (failure != null) {
+        MyTestWatcher.recordFailure(extensionContext, failure);
+      } else {
+        MyTestWatcher.recordSuccess(extensionContext);
+      }
+      failure = rerun.run();
+      if (failure != null) {
+        failures++;
+      }
+      runs++;
+      if (estimate == null && (FlakeEstimate.isLook(runs) || runs == maxRuns)) {
+        FlakeEstimate look = new FlakeEstimate(testName, runs, failures, ++looks,
+            config.getConfidenceLevel(), config.getConfidencePrecision());
+        if (look.isSettled() || runs == maxRuns) {
+          estimate = look;
+          MyTestWatcher.recordFlakeEstimate(extensionContext, estimate);
+        }
+      }
+      // Settled: stop at a pass, or right away if there has been none to wait for
+      if (runs >= maxRuns || estimate != null && (failure == null || failures == runs)) {
+        if (failure != null) {
+          throw failure;
+        }
+        return;
+      }
+    }
+  }
+
+  private static void rethrowIfFatal(Throwable failure) throws Throwable {
+    // Never retry through a JVM that is out of memory or linkage
+    if (failure instanceof VirtualMachineError || failure instanceof LinkageError) {
+      throw failure;
+    }
+  }
+
+  /** Runs a test method again on its instance, with the per-method fixtures run again around it. */
+  private static final class Rerun {
+
+    private final Method method;
+    private final Object target;
+    private final Object[] arguments;
+    private final ExtensionContext extensionContext;
+    // Outermost instance first; more than one for @Nested tests
+    private final List<Object> instances;
+
+    Rerun(ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) {
+      this.method = invocationContext.getExecutable();
+      this.target = invocationContext.getTarget().orElse(null);
+      this.arguments = invocationContext.getArguments().toArray();
+      this.extensionContext = extensionContext;
+      this.instances = extensionContext.getRequiredTestInstances().getAllInstances();
+      method.setAccessible(true);
+    }
+
+    /**
+     * Tears down the previous attempt, sets up and runs the next one, timed from the teardown on.
+     *
+     * @return the failure of the attempt, or null if it passed
+     */
+    Throwable run() throws Throwable {
+      DataStore.instance.getInFlight().put(extensionContext.getUniqueId(), AttemptClock.start());
+      DataStore.instance.getMetrics().attemptStarted();
+      // Same order as JUnit: @AfterEach innermost class first and subclass first, @BeforeEach the other way
+      List<Object> innermostFirst = new ArrayList<>(instances);
+      Collections.reverse(innermostFirst);
+      for (Object instance : innermostFirst) {
+        invokeAll(instance, AnnotationSupport.findAnnotatedMethods(instance.getClass(), AfterEach.class,
+            HierarchyTraversalMode.BOTTOM_UP));
+      }
+      for (Object instance : instances) {
+        invokeAll(instance, AnnotationSupport.findAnnotatedMethods(instance.getClass(), BeforeEach.class,
+            HierarchyTraversalMode.TOP_DOWN));
+      }
+      try {
+        method.invoke(target, arguments);
+        return null;
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof TestAbortedException) {
+          throw e.getCause();
+        }
+        return e.getCause();
+      }
+    }
+
+    // A fixture that fails ends the test with its exception, as it would without retries
+    private void invokeAll(Object instance, List<Method> methods) {
+      for (Method fixture : methods) {
+        extensionContext.getExecutableInvoker().invoke(fixture, instance);
+      }
+    }
+  }
+}
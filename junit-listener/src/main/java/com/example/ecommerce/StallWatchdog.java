@@ -0,0 +1,249 @@
+package com.example.ecommerce;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches in-flight attempts for tests that run past a deadline, e.g. a deadlock under parallel
+ * execution that would otherwise block the fork until Surefire's timeout without diagnostics.
+ *
+ * <p>A daemon thread wakes a few times per deadline and compares the start time of every
+ * in-flight {@link AttemptClock} with the clock; the test threads themselves do nothing extra.
+ * When attempts pass the deadline, a full thread dump with lock owners, locked monitors and
+ * synchronizers is written to {@code target/}, and the tests are listed in the report's
+ * {@code stalledTests} section. Each attempt is reported once.
+ */
+final class StallWatchdog {
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final long MIN_PERIOD_MILLIS = 100;
+  private static final long MAX_PERIOD_MILLIS = 5_000;
+
+  private final Map<String, AttemptClock> inFlight;
+  private final List<Stall> stalls = new CopyOnWriteArrayList<>();
+  private volatile long timeoutNanos;
+  private volatile Path dumpPrefix;
+  private volatile Runnable onStall;
+  private Thread thread;
+  private int dumps;
+
+  StallWatchdog(Map<String, AttemptClock> inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  /**
+   * Starts watching, or updates the deadline; a timeout of 0 stops the watchdog. Thread dumps
+   * are written to {@code <dumpPrefix>-<n>.txt} and {@code onStall} runs after each one.
+   */
+  synchronized void start(long timeout, TimeUnit unit, Path dumpPrefix, Runnable onStall) {
+    this.timeoutNanos = unit.toNanos(timeout);
+    this.dumpPrefix = dumpPrefix;
+    this.onStall = onStall;
+    if (timeout <= 0) {
+      if (thread != null) {
+        thread.interrupt();
+        thread = null;
+      }
+      return;
+    }
+    if (thread == null) {
+      thread = new Thread(this::watch, "junit5-watcher-watchdog");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  List<Stall> getStalls() {
+    return stalls;
+  }
+
+  private void watch() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        long timeout = timeoutNanos;
+        // A few checks per deadline; a stall is found at most a quarter deadline late
+        long period = Math.max(MIN_PERIOD_MILLIS, Math.min(MAX_PERIOD_MILLIS, TimeUnit.NANOSECONDS.toMillis(timeout) / 4));
+        Thread.sleep(period);
+        check(timeout);
+      }
+    } catch (InterruptedException e) {
+      // Stopped
+    }
+  }
+
+  private void check(long timeout) {
+    if (timeout <= 0) {
+      return;
+    }
+    long now = System.nanoTime();
+    List<Map.Entry<String, AttemptClock>> stalled = new ArrayList<>();
+    for (Map.Entry<String, AttemptClock> entry : inFlight.entrySet()) {
+      AttemptClock clock = entry.getValue();
+      if (!clock.isStalled() && now - clock.getStartNanos() > timeout) {
+        clock.markStalled();
+        stalled.add(entry);
+      }
+    }
+    if (stalled.isEmpty()) {
+      return;
+    }
+    Path file = dumpPrefix.resolveSibling(dumpPrefix.getFileName() + "-" + (++dumps) + ".txt");
+    ThreadInfo[] threads = THREADS.dumpAllThreads(
+        THREADS.isObjectMonitorUsageSupported(), THREADS.isSynchronizerUsageSupported());
+    Set<Long> deadlocked = deadlockedThreads();
+    List<Stall> found = new ArrayList<>();
+    for (Map.Entry<String, AttemptClock> entry : stalled) {
+      AttemptClock clock = entry.getValue();
+      found.add(new Stall(entry.getKey(), threadName(threads, clock.getThreadId()),
+          now - clock.getStartNanos(), file.getFileName().toString(), deadlocked.contains(clock.getThreadId())));
+    }
+    stalls.addAll(found);
+    try {
+      Files.createDirectories(file.getParent());
+      writeDump(file, found, threads, deadlocked);
+      System.err.println("JUnit5: " + stalled.size() + " test(s) running longer than "
+          + TimeUnit.NANOSECONDS.toSeconds(timeout) + " s, thread dump written to " + file.toAbsolutePath());
+    } catch (IOException e) {
+      System.err.println("Failed to write thread dump " + file + ": " + e.getMessage());
+    }
+    Runnable callback = onStall;
+    if (callback != null) {
+      callback.run();
+    }
+  }
+
+  private static Set<Long> deadlockedThreads() {
+    Set<Long> ids = new HashSet<>();
+    long[] deadlocked = THREADS.isSynchronizerUsageSupported()
+        ? THREADS.findDeadlockedThreads() : THREADS.findMonitorDeadlockedThreads();
+    if (deadlocked != null) {
+      for (long id : deadlocked) {
+        ids.add(id);
+      }
+    }
+    return ids;
+  }
+
+  private static String threadName(ThreadInfo[] threads, long id) {
+    for (ThreadInfo info : threads) {
+      if (info != null && info.getThreadId() == id) {
+        return info.getThreadName();
+      }
+    }
+    return null;
+  }
+
+  private static void writeDump(Path file, List<Stall> stalled, ThreadInfo[] threads, Set<Long> deadlocked)
+      throws IOException {
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+      for (Stall stall : stalled) {
+        out.printf("Stalled: %s on thread \"%s\" after %.1f s%s%n", stall.getTestName(), stall.getThread(),
+            stall.getRunningMs() / 1000, stall.isDeadlocked() ? " (deadlocked)" : "");
+      }
+      if (!deadlocked.isEmpty()) {
+        out.println("Deadlocked thread ids: " + deadlocked);
+      }
+      out.println();
+      // ThreadInfo.toString() cuts stacks at 8 frames, so the dump is formatted here
+      for (ThreadInfo info : threads) {
+        if (info != null) {
+          writeThread(out, info);
+        }
+      }
+    }
+  }
+
+  private static void writeThread(PrintWriter out, ThreadInfo info) {
+    out.printf("\"%s\" #%d %s", info.getThreadName(), info.getThreadId(), info.getThreadState());
+    if (info.getLockName() != null) {
+      out.print(" on " + info.getLockName());
+    }
+    if (info.getLockOwnerName() != null) {
+      out.printf(" owned by \"%s\" #%d", info.getLockOwnerName(), info.getLockOwnerId());
+    }
+    if (info.isInNative()) {
+      out.print(" (in native)");
+    }
+    out.println();
+    StackTraceElement[] frames = info.getStackTrace();
+    MonitorInfo[] monitors = info.getLockedMonitors();
+    for (int i = 0; i < frames.length; i++) {
+      out.println("\tat " + frames[i]);
+      if (i == 0 && info.getLockInfo() != null) {
+        String verb = info.getThreadState() == Thread.State.BLOCKED ? "blocked on " : "waiting on ";
+        out.println("\t- " + verb + info.getLockInfo());
+      }
+      for (MonitorInfo monitor : monitors) {
+        if (monitor.getLockedStackDepth() == i) {
+          out.println("\t- locked " + monitor);
+        }
+      }
+    }
+    LockInfo[] synchronizers = info.getLockedSynchronizers();
+    if (synchronizers.length > 0) {
+      out.println("\tLocked synchronizers:");
+      for (LockInfo synchronizer : synchronizers) {
+        out.println("\t- " + synchronizer);
+      }
+    }
+    out.println();
+  }
+
+  // DTO class for JSON serialization
+  static class Stall {
+    private final String testName;
+    private final String uniqueId;
+    private final String thread;
+    private final double runningMs;
+    private final String threadDump;
+    private final boolean deadlocked;
+
+    public Stall(String uniqueId, String thread, long runningNanos, String threadDump, boolean deadlocked) {
+      this.testName = TestNames.of(uniqueId);
+      this.uniqueId = uniqueId;
+      this.thread = thread;
+      this.runningMs = MyTestWatcher.toMillis(runningNanos);
+      this.threadDump = threadDump;
+      this.deadlocked = deadlocked;
+    }
+
+    public String getTestName() {
+      return testName;
+    }
+
+    public String getUniqueId() {
+      return uniqueId;
+    }
+
+    public String getThread() {
+      return thread;
+    }
+
+    public double getRunningMs() {
+      return runningMs;
+    }
+
+    public String getThreadDump() {
+      return threadDump;
+    }
+
+    public boolean isDeadlocked() {
+      return deadlocked;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Attempt;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress counters of the test run, rendered as OpenMetrics or Prometheus text.
+ *
+ * <p>Counters are {@link LongAdder}s: test threads update striped cells and never contend with
+ * each other or with a scrape, which sums the cells. A scrape is therefore not an atomic
+ * snapshot across counters; each value is exact at the moment it is read.
+ */
+final class TestMetrics {
+
+  // Upper bounds in seconds; the last bucket is +Inf
+  private static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+  private final Map<String, AttemptClock> inFlight;
+  private final LongAdder started = new LongAdder();
+  private final LongAdder finished = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final LongAdder flaky = new LongAdder();
+  private final Histogram passedDurations = new Histogram();
+  private final Histogram failedDurations = new Histogram();
+
+  TestMetrics(Map<String, AttemptClock> inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  void attemptStarted() {
+    started.increment();
+  }
+
+  /** Counts an attempt just recorded; {@code count} and {@code failures} of the test include it. */
+  void attemptFinished(boolean passed, int count, int failures, Attempt attempt) {
+    finished.increment();
+    if (!passed) {
+      failed.increment();
+    }
+    if (count > 1) {
+      retried.increment();
+      // First pass after failed attempts only, so a test is counted as flaky once
+      if (passed && failures == count - 1) {
+        flaky.increment();
+      }
+    }
+    if (attempt != null) {
+      (passed ? passedDurations : failedDurations).observe(attempt.getWallNanos());
+    }
+  }
+
+  /**
+   * Renders all metrics. OpenMetrics ends with {@code # EOF} and names counters without the
+   * {@code _total} suffix in their metadata; the Prometheus text format, read by the
+   * node_exporter textfile collector, does neither.
+   */
+  String render(boolean openMetrics) {
+    StringBuilder out = new StringBuilder(2048);
+    counter(out, openMetrics, "junit_test_attempts_started", "Test attempts started", started.sum());
+    counter(out, openMetrics, "junit_test_attempts_finished", "Test attempts with an outcome", finished.sum());
+    counter(out, openMetrics, "junit_test_attempts_failed", "Failed test attempts", failed.sum());
+    counter(out, openMetrics, "junit_test_attempts_retried",
+        "Attempts after the first of the same test", retried.sum());
+    counter(out, openMetrics, "junit_flaky_tests", "Tests that passed after failing", flaky.sum());
+
+    out.append("# TYPE junit_test_attempts_in_flight gauge\n");
+    out.append("# HELP junit_test_attempts_in_flight Test attempts currently running\n");
+    out.append("junit_test_attempts_in_flight ").append(inFlight.size()).append('\n');
+
+    String histogram = "junit_test_attempt_duration_seconds";
+    out.append("# TYPE ").append(histogram).append(" histogram\n");
+    out.append("# HELP ").append(histogram).append(" Wall-clock time of test attempts\n");
+    passedDurations.render(out, histogram, "passed");
+    failedDurations.render(out, histogram, "failed");
+    if (openMetrics) {
+      out.append("# EOF\n");
+    }
+    return out.toString();
+  }
+
+  private static void counter(StringBuilder out, boolean openMetrics, String name, String help, long value) {
+    String family = openMetrics ? name : name + "_total";
+    out.append("# TYPE ").append(family).append(" counter\n");
+    out.append("# HELP ").append(family).append(' ').append(help).append('\n');
+    out.append(name).append("_total ").append(value).append('\n');
+  }
+
+  private static final class Histogram {
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    void observe(long nanos) {
+      double seconds = nanos / 1e9;
+      int bucket = 0;
+      while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+        bucket++;
+      }
+      // Non-cumulative cells; rendering adds them up
+      buckets[bucket].increment();
+      sumNanos.add(nanos);
+    }
+
+    void render(StringBuilder out, String name, String status) {
+      long cumulative = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        cumulative += buckets[i].sum();
+        String bound = i < BUCKETS.length ? Double.toString(BUCKETS[i]) : "+Inf";
+        out.append(name).append("_bucket{status=\"").append(status).append("\",le=\"").append(bound).append("\"} ")
+            .append(cumulative).append('\n');
+      }
+      // Count equals the +Inf bucket, as the format requires
+      out.append(name).append("_count{status=\"").append(status).append("\"} ").append(cumulative).append('\n');
+      out.append(name).append("_sum{status=\"").append(status).append("\"} ")
+          .append(sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.ecommerce;
+
+/**
+ * Builds human-readable test names from JUnit unique ids. Only used when a report or history
+ * record is written; the watcher itself keys everything by the unique id.
+ *
+ * <p>Examples:
+ * <pre>
+ * [engine:junit-jupiter]/[class:a.UserTest]/[method:shouldSave()]             -> a.UserTest#shouldSave
+ * [engine:junit-jupiter]/[class:a.UserTest]/[nested-class:Create]/[method:x()] -> a.UserTest$Create#x
+ * .../[test-template:check(java.lang.String)]/[test-template-invocation:#2]    -> a.UserTest#check(java.lang.String)[2]
+ * </pre>
+ * Unlike display names these are stable across builds, so they can key the history.
+ */
+final class TestNames {
+
+  private TestNames() {
+  }
+
+  static String of(String uniqueId) {
+    StringBuilder className = new StringBuilder();
+    StringBuilder member = new StringBuilder();
+    int start = uniqueId.indexOf('[');
+    while (start >= 0) {
+      int colon = uniqueId.indexOf(':', start);
+      int end = segmentEnd(uniqueId, colon);
+      if (colon < 0 || end < 0) {
+        break;
+      }
+      String type = uniqueId.substring(start + 1, colon);
+      String value = uniqueId.substring(colon + 1, end);
+      switch (type) {
+        case "class":
+          className.setLength(0);
+          className.append(value);
+          break;
+        case "nested-class":
+          className.append('$').append(value);
+          break;
+        case "method":
+        case "test-template":
+        case "test-factory":
+          member.append(value.endsWith("()") ? value.substring(0, value.length() - 2) : value);
+          break;
+        case "engine":
+          break;
+        default:
+          // Invocations of templates and dynamic tests: [test-template-invocation:#2] -> [2]
+          member.append('[').append(value.startsWith("#") ? value.substring(1) : value).append(']');
+          break;
+      }
+      start = uniqueId.indexOf('[', end);
+    }
+    if (className.length() == 0) {
+      return uniqueId;
+    }
+    return member.length() == 0 ? className.toString() : className + "#" + member;
+  }
+
+  // Values may contain brackets (array parameter types), so match the "]/" separator or the end
+  private static int segmentEnd(String uniqueId, int colon) {
+    if (colon < 0) {
+      return -1;
+    }
+    int separator = uniqueId.indexOf("]/[", colon);
+    if (separator >= 0) {
+      return separator;
+    }
+    return uniqueId.endsWith("]") ? uniqueId.length() - 1 : -1;
+  }
+}
@@ -0,0 +1,214 @@
+package com.example.ecommerce;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.launcher.TestIdentifier;
+
+/**
+ * Records the start and end of every container and test, with the thread that ran it, and
+ * streams them as a Chrome trace (JSON array format, viewable in Perfetto or chrome://tracing).
+ *
+ * <p>Every thread appends to its own buffer, a linked list of fixed-size chunks. Appending is
+ * a plain array store plus one volatile write of the chunk's count, without locks or CAS, so
+ * recording does not change how the worker pool schedules tests. The report thread is the only
+ * reader: it follows each buffer from where it stopped, formats the new events and drops chunks
+ * it has finished. Events are formatted and written only there.
+ *
+ * <p>The closing bracket is written when the JVM exits. Trace viewers accept the array without
+ * it, so the file can be opened while tests are still running.
+ */
+final class TraceRecorder {
+
+  private static final int CHUNK_SIZE = 512;
+
+  private final Path file;
+  private final long originNanos = System.nanoTime();
+  private final long pid = processId();
+  private final Queue<ThreadBuffer> buffers = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<ThreadBuffer> local = ThreadLocal.withInitial(this::newBuffer);
+  // Report thread only
+  private JsonWriter json;
+
+  private TraceRecorder(Path file, JsonWriter json) {
+    this.file = file;
+    this.json = json;
+  }
+
+  static TraceRecorder open(Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    JsonWriter json = new JsonWriter(new BufferedWriter(
+        new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), ReportWriter.BUFFER_SIZE));
+    json.beginArray();
+    TraceRecorder recorder = new TraceRecorder(file, json);
+    recorder.writeMetadata("process_name", 0, "JUnit " + Paths.get(System.getProperty("user.dir")).getFileName());
+    return recorder;
+  }
+
+  Path getFile() {
+    return file;
+  }
+
+  void started(TestIdentifier testIdentifier) {
+    local.get().add(testIdentifier, null, System.nanoTime());
+  }
+
+  void finished(TestIdentifier testIdentifier, TestExecutionResult.Status status) {
+    local.get().add(testIdentifier, status, System.nanoTime());
+  }
+
+  /** Writes the events recorded since the previous call. Called on the report thread. */
+  synchronized void drain() {
+    if (json == null) {
+      return;
+    }
+    try {
+      for (ThreadBuffer buffer : buffers) {
+        drain(buffer);
+      }
+      json.flush();
+    } catch (IOException e) {
+      System.err.println("Test execution trace disabled, cannot write " + file + ": " + e.getMessage());
+      closeQuietly();
+    }
+  }
+
+  /** Writes the remaining events and closes the trace. */
+  synchronized void close() {
+    drain();
+    if (json == null) {
+      return;
+    }
+    try {
+      json.endArray();
+      json.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close test execution trace " + file + ": " + e.getMessage());
+    }
+    json = null;
+  }
+
+  private void drain(ThreadBuffer buffer) throws IOException {
+    if (!buffer.named) {
+      writeMetadata("thread_name", buffer.threadId, buffer.threadName);
+      buffer.named = true;
+    }
+    while (true) {
+      Chunk chunk = buffer.head;
+      // Volatile read: every slot below count is fully written
+      int count = chunk.count;
+      for (int i = buffer.read; i < count; i++) {
+        writeEvent(buffer.threadId, chunk.ids[i], chunk.results[i], chunk.nanos[i]);
+      }
+      buffer.read = count;
+      Chunk next = chunk.next;
+      if (count < CHUNK_SIZE || next == null) {
+        return;
+      }
+      buffer.head = next;
+      buffer.read = 0;
+    }
+  }
+
+  private void writeEvent(long threadId, TestIdentifier testIdentifier, TestExecutionResult.Status status,
+      long nanos) throws IOException {
+    json.beginObject();
+    json.name("name").value(testIdentifier.getDisplayName());
+    json.name("cat").value(testIdentifier.isTest() ? "test" : "container");
+    // Only end events carry a status
+    json.name("ph").value(status != null ? "E" : "B");
+    json.name("ts").value((nanos - originNanos) / 1000.0);
+    json.name("pid").value(pid);
+    json.name("tid").value(threadId);
+    json.name("args").beginObject();
+    json.name("uniqueId").value(testIdentifier.getUniqueId());
+    if (status != null) {
+      json.name("status").value(status.name());
+    }
+    json.endObject();
+    json.endObject();
+  }
+
+  private void writeMetadata(String name, long threadId, String value) throws IOException {
+    json.beginObject();
+    json.name("name").value(name);
+    json.name("ph").value("M");
+    json.name("pid").value(pid);
+    json.name("tid").value(threadId);
+    json.name("args").beginObject().name("name").value(value).endObject();
+    json.endObject();
+  }
+
+  private void closeQuietly() {
+    try {
+      json.close();
+    } catch (IOException e) {
+      // Already reported
+    }
+    json = null;
+  }
+
+  private static long processId() {
+    try {
+      return Long.parseLong(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private ThreadBuffer newBuffer() {
+    Thread thread = Thread.currentThread();
+    ThreadBuffer buffer = new ThreadBuffer(thread.getId(), thread.getName());
+    buffers.add(buffer);
+    return buffer;
+  }
+
+  private static final class ThreadBuffer {
+    private final long threadId;
+    private final String threadName;
+    // Owning thread only
+    private Chunk tail = new Chunk();
+    // Report thread only
+    private Chunk head = tail;
+    private int read;
+    private boolean named;
+
+    ThreadBuffer(long threadId, String threadName) {
+      this.threadId = threadId;
+      this.threadName = threadName;
+    }
+
+    void add(TestIdentifier testIdentifier, TestExecutionResult.Status status, long nanos) {
+      Chunk chunk = tail;
+      int count = chunk.count;
+      if (count == CHUNK_SIZE) {
+        Chunk next = new Chunk();
+        chunk.next = next;
+        tail = chunk = next;
+        count = 0;
+      }
+      chunk.ids[count] = testIdentifier;
+      chunk.results[count] = status;
+      chunk.nanos[count] = nanos;
+      // Publishes the slot to the report thread
+      chunk.count = count + 1;
+    }
+  }
+
+  private static final class Chunk {
+    private final TestIdentifier[] ids = new TestIdentifier[CHUNK_SIZE];
+    private final TestExecutionResult.Status[] results = new TestExecutionResult.Status[CHUNK_SIZE];
+    private final long[] nanos = new long[CHUNK_SIZE];
+    private volatile int count;
+    private volatile Chunk next;
+  }
+}
@@ -0,0 +1,189 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.ModuleReport.ClassDuration;
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Report state maintained as tests finish, so the end of a test plan only touches what
+ * changed since the previous plan instead of scanning the whole tracker.
+ *
+ * <p>Test threads only mark a test dirty and update the per-class totals. The flaky set and the
+ * slowest-tests and top-allocator rankings are refreshed from the dirty tests when a plan
+ * finishes, when no attempt of that plan is still running; the rankings are exact because a
+ * test's totals only ever grow.
+ *
+ * <p>Green tests of the {@link CompactTracker} have no Data to mark; they only update the class
+ * totals here and are ranked when the compact tracker is drained.
+ */
+final class TrackerIndex {
+
+  // Data uses identity hashing, so marking a test is a pointer hash, not a string hash
+  private final Set<Data> dirty = ConcurrentHashMap.newKeySet();
+  private final Set<Data> flaky = ConcurrentHashMap.newKeySet();
+  private final Map<String, ClassTotals> classes = new ConcurrentHashMap<>();
+  private final Ranking slowest = new Ranking(Data.Snapshot::getTotalWallNanos);
+  private final Ranking allocators = new Ranking(Data.Snapshot::getTotalAllocatedBytes);
+
+  /**
+   * Called from the test thread with the state that recorded the attempt. Exactly one attempt
+   * installs the state with count 1, so each test is counted once per class.
+   */
+  void onAttempt(Data data, Data.Snapshot state, MyTestWatcher.Attempt attempt) {
+    dirty.add(data);
+    countAttempt(data.getClassName(), state.getCount(), attempt);
+  }
+
+  /** Adds an attempt to its class totals; {@code count} is the test's count including it. */
+  void countAttempt(String className, int count, MyTestWatcher.Attempt attempt) {
+    ClassTotals totals = classes.computeIfAbsent(className, key -> new ClassTotals());
+    if (count == 1) {
+      totals.tests.increment();
+    }
+    totals.executions.increment();
+    if (attempt != null) {
+      totals.wallNanos.add(attempt.getWallNanos());
+      totals.cpuNanos.add(Math.max(0, attempt.getCpuNanos()));
+      totals.allocatedBytes.add(Math.max(0, attempt.getAllocatedBytes()));
+    }
+  }
+
+  /** Returns and clears the tests that recorded attempts since the previous call. */
+  List<Data> drainDirty() {
+    List<Data> drained = new ArrayList<>();
+    for (Iterator<Data> it = dirty.iterator(); it.hasNext(); ) {
+      Data data = it.next();
+      it.remove();
+      drained.add(data);
+      if (ModuleReport.isFlaky(data.snapshot())) {
+        flaky.add(data);
+      } else {
+        flaky.remove(data);
+      }
+    }
+    return drained;
+  }
+
+  List<Data> flakyTests() {
+    return new ArrayList<>(flaky);
+  }
+
+  /** Re-ranks the changed tests and returns the current N slowest, slowest first. */
+  List<Data> updateSlowest(List<Data> changed, int limit) {
+    return slowest.update(changed, limit);
+  }
+
+  /** Re-ranks the changed tests and returns the N that allocated the most, largest first. */
+  List<Data> updateTopAllocators(List<Data> changed, int limit) {
+    return allocators.update(changed, limit);
+  }
+
+  /**
+   * Re-ranks a test of the compact tracker. {@code view} is only called if the test makes a
+   * ranking, so the detached Data is built for the few tests the report shows.
+   */
+  void rankCompact(int id, long totalWallNanos, long totalAllocatedBytes, Supplier<Data> view,
+      int slowestLimit, int allocatorLimit) {
+    slowest.offer(id, totalWallNanos, view, slowestLimit);
+    allocators.offer(id, totalAllocatedBytes, view, allocatorLimit);
+  }
+
+  List<ClassDuration> classDurations() {
+    List<ClassDuration> durations = new ArrayList<>(classes.size());
+    for (Entry<String, ClassTotals> entry : classes.entrySet()) {
+      ClassTotals totals = entry.getValue();
+      durations.add(new ClassDuration(entry.getKey(), totals.tests.intValue(), totals.executions.intValue(),
+          totals.wallNanos.sum(), totals.cpuNanos.sum(), totals.allocatedBytes.sum()));
+    }
+    return durations;
+  }
+
+  private static final class ClassTotals {
+    private final LongAdder tests = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+  }
+
+  /**
+   * Top-N of tests by a growing total. Only used by the thread that finishes a test plan. Keyed
+   * by test id, so a test promoted from the compact tracker replaces its earlier entry.
+   */
+  private static final class Ranking {
+
+    private final ToLongFunction<Data.Snapshot> key;
+    private final TreeSet<Ranked> top = new TreeSet<>();
+    private final Map<Integer, Ranked> ranked = new HashMap<>();
+
+    Ranking(ToLongFunction<Data.Snapshot> key) {
+      this.key = key;
+    }
+
+    synchronized List<Data> update(List<Data> changed, int limit) {
+      if (limit <= 0) {
+        return new ArrayList<>();
+      }
+      for (Data data : changed) {
+        offer(data.getId(), key.applyAsLong(data.snapshot()), () -> data, limit);
+      }
+
+      List<Data> result = new ArrayList<>(top.size());
+      for (Ranked entry : top.descendingSet()) {
+        result.add(entry.data);
+      }
+      return result;
+    }
+
+    synchronized void offer(int id, long value, Supplier<Data> data, int limit) {
+      if (limit <= 0) {
+        return;
+      }
+      Ranked previous = ranked.remove(id);
+      if (previous != null) {
+        top.remove(previous);
+      }
+      if (top.size() < limit || compare(value, id, top.first()) > 0) {
+        Ranked current = new Ranked(id, value, data.get());
+        top.add(current);
+        ranked.put(id, current);
+      }
+      while (top.size() > limit) {
+        ranked.remove(top.pollFirst().id);
+      }
+    }
+  }
+
+  private static int compare(long value, int id, Ranked other) {
+    int byValue = Long.compare(value, other.value);
+    return byValue != 0 ? byValue : Integer.compare(id, other.id);
+  }
+
+  private static final class Ranked implements Comparable<Ranked> {
+    private final int id;
+    private final long value;
+    private final Data data;
+
+    Ranked(int id, long value, Data data) {
+      this.id = id;
+      this.value = value;
+      this.data = data;
+    }
+
+    @Override
+    public int compareTo(Ranked other) {
+      return compare(value, id, other);
+    }
+  }
+}
@@ -0,0 +1,302 @@
+package com.example.ecommerce;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.function.Function;
+import org.junit.platform.engine.ConfigurationParameters;
+
+/**
+ * Listener settings, read from the launcher configuration parameters (pom
+ * configurationParameters, junit-platform.properties or -D system properties).
+ */
+public final class WatcherConfig {
+
+  public static final String SLOWEST_TESTS = "junit5.watcher.report.slowestTests";
+  public static final String PRETTY_PRINT = "junit5.watcher.report.prettyPrint";
+  public static final String REPORT_FORMAT = "junit5.watcher.report.format";
+  public static final String REPORT_GZIP = "junit5.watcher.report.gzip";
+  public static final String TOP_ALLOCATORS = "junit5.watcher.report.topAllocators";
+  public static final String ALLOCATION_TRACKING = "junit5.watcher.allocation.enabled";
+  public static final String GC_ATTRIBUTION = "junit5.watcher.gc.enabled";
+  public static final String MAX_FAILURE_FRAMES = "junit5.watcher.failure.maxFrames";
+  public static final String HISTORY_ENABLED = "junit5.watcher.history.enabled";
+  public static final String HISTORY_DIR = "junit5.watcher.history.dir";
+  public static final String HISTORY_MAX_AGE_DAYS = "junit5.watcher.history.maxAgeDays";
+  public static final String FORK_AGGREGATION = "junit5.watcher.forks.aggregate";
+  public static final String RETRY_COUNT = "junit5.watcher.retry.count";
+  public static final String TRACE_ENABLED = "junit5.watcher.trace.enabled";
+  public static final String STALL_TIMEOUT = "junit5.watcher.stall.timeoutSeconds";
+  public static final String METRICS_PORT = "junit5.watcher.metrics.port";
+  public static final String METRICS_FILE = "junit5.watcher.metrics.file";
+  public static final String METRICS_INTERVAL = "junit5.watcher.metrics.intervalSeconds";
+  public static final String COMPACT_TRACKER = "junit5.watcher.tracker.compact";
+  public static final String REGRESSION_ENABLED = "junit5.watcher.regression.enabled";
+  public static final String REGRESSION_MIN_RATIO = "junit5.watcher.regression.minRatio";
+  public static final String REGRESSION_MIN_DELTA_MS = "junit5.watcher.regression.minDeltaMs";
+  public static final String REGRESSION_MAX_P_VALUE = "junit5.watcher.regression.maxPValue";
+  public static final String CONFIDENCE_MAX_RUNS = "junit5.watcher.confidence.maxRuns";
+  public static final String CONFIDENCE_LEVEL = "junit5.watcher.confidence.level";
+  public static final String CONFIDENCE_PRECISION = "junit5.watcher.confidence.precision";
+  public static final String OVERLAP_ENABLED = "junit5.watcher.overlap.enabled";
+  public static final String OVERLAP_CONCURRENT_TESTS = "junit5.watcher.overlap.concurrentTests";
+  public static final String FIXTURES_ENABLED = "junit5.watcher.fixtures.enabled";
+
+  private static final WatcherConfig DEFAULTS = new WatcherConfig(key -> Optional.empty());
+
+  private final int slowestTests;
+  private final boolean prettyPrint;
+  private final boolean binaryReport;
+  private final boolean reportGzip;
+  private final int topAllocators;
+  private final boolean allocationTracking;
+  private final boolean gcAttribution;
+  private final int maxFailureFrames;
+  private final boolean historyEnabled;
+  private final Path historyDir;
+  private final int historyMaxAgeDays;
+  private final boolean forkAggregation;
+  private final int retryCount;
+  private final boolean traceEnabled;
+  private final int stallTimeoutSeconds;
+  private final int metricsPort;
+  private final Path metricsFile;
+  private final int metricsIntervalSeconds;
+  private final boolean compactTracker;
+  private final boolean regressionDetection;
+  private final double regressionMinRatio;
+  private final double regressionMinDeltaMs;
+  private final double regressionMaxPValue;
+  private final int confidenceMaxRuns;
+  private final double confidenceLevel;
+  private final double confidencePrecision;
+  private final boolean overlapIndex;
+  private final int overlapConcurrentTests;
+  private final boolean fixtureTiming;
+
+  private WatcherConfig(Function<String, Optional<String>> parameters) {
+    this.slowestTests = getInt(parameters, SLOWEST_TESTS, 10);
+    this.prettyPrint = getBoolean(parameters, PRETTY_PRINT, true);
+    this.binaryReport = isBinaryFormat(parameters);
+    this.reportGzip = getBoolean(parameters, REPORT_GZIP, false);
+    this.topAllocators = getInt(parameters, TOP_ALLOCATORS, 10);
+    this.allocationTracking = getBoolean(parameters, ALLOCATION_TRACKING, true);
+    this.gcAttribution = getBoolean(parameters, GC_ATTRIBUTION, true);
+    this.maxFailureFrames = getInt(parameters, MAX_FAILURE_FRAMES, 64);
+    this.historyEnabled = getBoolean(parameters, HISTORY_ENABLED, true);
+    this.historyDir = parameters.apply(HISTORY_DIR)
+        .map(Paths::get)
+        .orElseGet(() -> Paths.get(System.getProperty("user.dir"), ".flaky-history"));
+    this.historyMaxAgeDays = Math.max(1, getInt(parameters, HISTORY_MAX_AGE_DAYS, 30));
+    this.forkAggregation = getBoolean(parameters, FORK_AGGREGATION, false);
+    this.retryCount = Math.max(0, getInt(parameters, RETRY_COUNT, 0));
+    this.traceEnabled = getBoolean(parameters, TRACE_ENABLED, false);
+    this.stallTimeoutSeconds = Math.max(0, getInt(parameters, STALL_TIMEOUT, 300));
+    this.metricsPort = getInt(parameters, METRICS_PORT, -1);
+    this.metricsFile = parameters.apply(METRICS_FILE)
+        .map(String::trim)
+        .filter(value -> !value.isEmpty())
+        .map(Paths::get)
+        .orElse(null);
+    this.metricsIntervalSeconds = getInt(parameters, METRICS_INTERVAL, 10);
+    this.compactTracker = getBoolean(parameters, COMPACT_TRACKER, false);
+    this.regressionDetection = getBoolean(parameters, REGRESSION_ENABLED, true);
+    this.regressionMinRatio = getDouble(parameters, REGRESSION_MIN_RATIO, 2.0);
+    this.regressionMinDeltaMs = getDouble(parameters, REGRESSION_MIN_DELTA_MS, 10);
+    this.regressionMaxPValue = getDouble(parameters, REGRESSION_MAX_P_VALUE, 0.001);
+    this.confidenceMaxRuns = Math.max(0, getInt(parameters, CONFIDENCE_MAX_RUNS, 0));
+    this.confidenceLevel = getDouble(parameters, CONFIDENCE_LEVEL, 0.95);
+    this.confidencePrecision = getDouble(parameters, CONFIDENCE_PRECISION, 0.05);
+    this.overlapIndex = getBoolean(parameters, OVERLAP_ENABLED, true);
+    this.overlapConcurrentTests = getInt(parameters, OVERLAP_CONCURRENT_TESTS, 10);
+    this.fixtureTiming = getBoolean(parameters, FIXTURES_ENABLED, true);
+  }
+
+  public static WatcherConfig defaults() {
+    return DEFAULTS;
+  }
+
+  public static WatcherConfig from(ConfigurationParameters parameters) {
+    if (parameters == null) {
+      return DEFAULTS;
+    }
+    return new WatcherConfig(parameters::get);
+  }
+
+  public int getSlowestTests() {
+    return slowestTests;
+  }
+
+  public boolean isPrettyPrint() {
+    return prettyPrint;
+  }
+
+  /** True for {@code format=binary}, false for the default {@code json}. */
+  public boolean isBinaryReport() {
+    return binaryReport;
+  }
+
+  public boolean isReportGzip() {
+    return reportGzip;
+  }
+
+  public int getTopAllocators() {
+    return topAllocators;
+  }
+
+  public boolean isAllocationTracking() {
+    return allocationTracking;
+  }
+
+  public boolean isGcAttribution() {
+    return gcAttribution;
+  }
+
+  public int getMaxFailureFrames() {
+    return maxFailureFrames;
+  }
+
+  public boolean isHistoryEnabled() {
+    return historyEnabled;
+  }
+
+  public Path getHistoryDir() {
+    return historyDir;
+  }
+
+  /** Days a test stays in the history summary after the last build that ran it. */
+  public int getHistoryMaxAgeDays() {
+    return historyMaxAgeDays;
+  }
+
+  public boolean isForkAggregation() {
+    return forkAggregation;
+  }
+
+  /** In-JVM retries of a failing test method; 0 leaves retries to Surefire. */
+  public int getRetryCount() {
+    return retryCount;
+  }
+
+  /** Chrome trace of test and container execution per thread. */
+  public boolean isTraceEnabled() {
+    return traceEnabled;
+  }
+
+  /** Running time after which an attempt counts as stalled; 0 turns the watchdog off. */
+  public int getStallTimeoutSeconds() {
+    return stallTimeoutSeconds;
+  }
+
+  /** Localhost port of the metrics endpoint; 0 picks a free port, -1 (the default) disables it. */
+  public int getMetricsPort() {
+    return metricsPort;
+  }
+
+  /** Textfile collector output, or null when disabled. */
+  public Path getMetricsFile() {
+    return metricsFile;
+  }
+
+  public int getMetricsIntervalSeconds() {
+    return metricsIntervalSeconds;
+  }
+
+  /** Keep tests that never failed in the primitive {@link CompactTracker}. */
+  public boolean isCompactTracker() {
+    return compactTracker;
+  }
+
+  /** Compare test durations against the history; needs the history to be enabled. */
+  public boolean isRegressionDetection() {
+    return regressionDetection;
+  }
+
+  /** Slowdown against the baseline median from which a test can be a duration regression. */
+  public double getRegressionMinRatio() {
+    return regressionMinRatio;
+  }
+
+  public double getRegressionMinDeltaMs() {
+    return regressionMinDeltaMs;
+  }
+
+  /** One-sided p-value at or below which a slowdown counts as significant. */
+  public double getRegressionMaxPValue() {
+    return regressionMaxPValue;
+  }
+
+  /** Repeats of a failing test that estimate its failure rate; 0 (the default) turns them off. */
+  public int getConfidenceMaxRuns() {
+    return confidenceMaxRuns;
+  }
+
+  public double getConfidenceLevel() {
+    return confidenceLevel;
+  }
+
+  /** Half width of the failure rate interval at which repeats stop. */
+  public double getConfidencePrecision() {
+    return confidencePrecision;
+  }
+
+  /** Record attempt intervals to find the tests that ran during failures. */
+  public boolean isOverlapIndex() {
+    return overlapIndex;
+  }
+
+  /** Concurrent tests listed per failing test in the {@code failureOverlaps} report section. */
+  public int getOverlapConcurrentTests() {
+    return overlapConcurrentTests;
+  }
+
+  /** Time lifecycle methods per test class for the {@code fixtureCosts} report section. */
+  public boolean isFixtureTiming() {
+    return fixtureTiming;
+  }
+
+  private static boolean isBinaryFormat(Function<String, Optional<String>> parameters) {
+    String format = parameters.apply(REPORT_FORMAT).map(String::trim).orElse("json");
+    if ("binary".equalsIgnoreCase(format)) {
+      return true;
+    }
+    if (!"json".equalsIgnoreCase(format)) {
+      System.err.println("Ignoring invalid value for " + REPORT_FORMAT + ": " + format);
+    }
+    return false;
+  }
+
+  private static boolean getBoolean(Function<String, Optional<String>> parameters, String key,
+      boolean defaultValue) {
+    return parameters.apply(key)
+        .map(value -> Boolean.parseBoolean(value.trim()))
+        .orElse(defaultValue);
+  }
+
+  private static double getDouble(Function<String, Optional<String>> parameters, String key,
+      double defaultValue) {
+    Optional<String> value = parameters.apply(key);
+    if (!value.isPresent()) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value.get().trim());
+    } catch (NumberFormatException e) {
+      System.err.println("Ignoring invalid value for " + key + ": " + value.get());
+      return defaultValue;
+    }
+  }
+
+  private static int getInt(Function<String, Optional<String>> parameters, String key, int defaultValue) {
+    Optional<String> value = parameters.apply(key);
+    if (!value.isPresent()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.get().trim());
+    } catch (NumberFormatException e) {
+      System.err.println("Ignoring invalid value for " + key + ": " + value.get());
+      return defaultValue;
+    }
+  }
+}
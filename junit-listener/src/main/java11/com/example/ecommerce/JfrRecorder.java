@@ -0,0 +1,140 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for test attempts, failures and retry rounds, so a recording of a
+ * CI run lines test boundaries up with CPU samples, allocations and lock events.
+ *
+ * <p>Compiled for Java 11 and loaded by {@link JfrEvents} only when the JVM has {@code jdk.jfr}.
+ * Events are only created while a recording has them enabled.
+ */
+final class JfrRecorder extends JfrEvents.Recorder {
+
+  @Override
+  Object attemptStarted() {
+    TestAttemptEvent event = new TestAttemptEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  @Override
+  void attemptFinished(Object handle, String uniqueId, int attempt, String status) {
+    if (handle == null) {
+      return;
+    }
+    TestAttemptEvent event = (TestAttemptEvent) handle;
+    event.end();
+    if (event.shouldCommit()) {
+      event.testName = TestNames.of(uniqueId);
+      event.uniqueId = uniqueId;
+      event.attempt = attempt;
+      event.status = status;
+      event.commit();
+    }
+  }
+
+  @Override
+  void testFailed(Data data, int attempt, FailureSnapshot failure) {
+    TestFailureEvent event = new TestFailureEvent();
+    if (!event.shouldCommit()) {
+      return;
+    }
+    event.testName = data.getName();
+    event.uniqueId = data.getUniqueId();
+    event.attempt = attempt;
+    event.exceptionClass = failure.getExceptionClass();
+    event.message = failure.getMessage();
+    event.fingerprint = failure.getFingerprint();
+    event.commit();
+  }
+
+  @Override
+  Object roundStarted(int round) {
+    RetryRoundEvent event = new RetryRoundEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.round = round;
+    event.begin();
+    return event;
+  }
+
+  @Override
+  void roundFinished(Object handle, List<Data> tests, int compactTests) {
+    if (handle == null) {
+      return;
+    }
+    RetryRoundEvent event = (RetryRoundEvent) handle;
+    event.end();
+    if (event.shouldCommit()) {
+      event.tests = tests.size() + compactTests;
+      for (Data data : tests) {
+        if ("FAILED".equals(data.getLastStatus())) {
+          event.failedTests++;
+        }
+      }
+      event.commit();
+    }
+  }
+
+  @Name("com.example.ecommerce.TestAttempt")
+  @Label("Test Attempt")
+  @Category("JUnit")
+  @Description("One execution of a test, from start to its outcome")
+  static final class TestAttemptEvent extends Event {
+    @Label("Test")
+    String testName;
+    @Label("Unique Id")
+    String uniqueId;
+    @Label("Attempt")
+    @Description("1 for the first execution, higher for retries")
+    int attempt;
+    @Label("Status")
+    String status;
+  }
+
+  @Name("com.example.ecommerce.TestFailure")
+  @Label("Test Failure")
+  @Category("JUnit")
+  @Description("A failed test attempt")
+  static final class TestFailureEvent extends Event {
+    @Label("Test")
+    String testName;
+    @Label("Unique Id")
+    String uniqueId;
+    @Label("Attempt")
+    int attempt;
+    @Label("Exception Class")
+    String exceptionClass;
+    @Label("Message")
+    String message;
+    @Label("Fingerprint")
+    @Description("Failure fingerprint, as in the report's failures section")
+    String fingerprint;
+  }
+
+  @Name("com.example.ecommerce.RetryRound")
+  @Label("Retry Round")
+  @Category("JUnit")
+  @Description("One test plan; round 0 is the first run, later rounds are Surefire reruns")
+  static final class RetryRoundEvent extends Event {
+    @Label("Round")
+    int round;
+    @Label("Tests")
+    @Description("Tests that recorded attempts in this round")
+    int tests;
+    @Label("Failed Tests")
+    @Description("Tests whose last attempt in this round failed")
+    int failedTests;
+  }
+}
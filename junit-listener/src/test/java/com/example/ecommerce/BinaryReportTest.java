@@ -0,0 +1,163 @@
+package com.example.ecommerce;
+
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("BinaryReport Tests")
+class BinaryReportTest {
+
+  private static final String CLASS_NAME = "com.example.ecommerce.order.integration.ECommerceIntegrationTest";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  @DisplayName("Should convert to the same JSON as the JSON writer")
+  void shouldConvertToSameJsonAsJsonWriter() throws IOException {
+    Path jsonFile = directory.resolve("report.txt");
+    try (ReportWriter json = ReportWriter.open(jsonFile, false)) {
+      writeReport(json);
+    }
+
+    String converted = toJson(binaryReport());
+
+    assertThat(converted).isEqualTo(new String(Files.readAllBytes(jsonFile), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  @DisplayName("Should write every distinct string once")
+  void shouldWriteStringsOnce() throws IOException {
+    String report = new String(binaryReport(), StandardCharsets.ISO_8859_1);
+
+    // Three entries use the member names and two of them the PASSED status
+    assertThat(occurrences(report, "testName")).isEqualTo(1);
+    assertThat(occurrences(report, "PASSED")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should skip the sections that are not read")
+  void shouldSkipSectionsNotRead() throws IOException {
+    BinaryReport.Reader reader = new BinaryReport.Reader(new ByteArrayInputStream(binaryReport()));
+
+    assertThat(reader.nextSection()).isEqualTo("flakyTests");
+    assertThat(reader.nextSection()).isEqualTo("failedTests");
+    JsonElement entry = reader.nextEntry();
+    assertThat(entry.getAsJsonObject().get("testName").getAsString()).isEqualTo(CLASS_NAME + "#broken");
+    assertThat(reader.nextEntry()).isNull();
+    assertThat(reader.nextSection()).isNull();
+  }
+
+  @Test
+  @DisplayName("Should skip record types it does not know")
+  void shouldSkipUnknownRecordTypes() throws IOException {
+    byte[] report = binaryReport();
+    ByteArrayOutputStream extended = new ByteArrayOutputStream();
+    // Header, then a record of a type added by a later version, then the rest
+    extended.write(report, 0, 8);
+    extended.write(new byte[] {99, 3, 1, 2, 3});
+    extended.write(report, 8, report.length - 8);
+
+    assertThat(toJson(extended.toByteArray())).isEqualTo(toJson(report));
+  }
+
+  @Test
+  @DisplayName("Should detect the format without consuming the stream")
+  void shouldDetectFormatWithoutConsuming() throws IOException {
+    BufferedInputStream binary = new BufferedInputStream(new ByteArrayInputStream(binaryReport()));
+    BufferedInputStream json = new BufferedInputStream(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(BinaryReport.isBinary(binary)).isTrue();
+    assertThat(BinaryReport.isBinary(json)).isFalse();
+    assertThat(new BinaryReport.Reader(binary).nextSection()).isEqualTo("flakyTests");
+  }
+
+  @Test
+  @DisplayName("Should reject a report that is not binary")
+  void shouldRejectReportThatIsNotBinary() {
+    byte[] json = "{\"flakyTests\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    assertThatThrownBy(() -> new BinaryReport.Reader(new ByteArrayInputStream(json)))
+        .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  @DisplayName("Should fail on a truncated report")
+  void shouldFailOnTruncatedReport() throws IOException {
+    byte[] report = binaryReport();
+    byte[] truncated = Arrays.copyOf(report, report.length - 10);
+
+    assertThatThrownBy(() -> toJson(truncated)).isInstanceOf(IOException.class);
+  }
+
+  private static byte[] binaryReport() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ReportWriter binary = new BinaryReport.Writer(out)) {
+      writeReport(binary);
+    }
+    return out.toByteArray();
+  }
+
+  private static void writeReport(ReportWriter writer) throws IOException {
+    writer.beginSection("flakyTests");
+    writer.writeEntry(new Entry(CLASS_NAME + "#checkout", 3, 1_234_567_890_123L, 2.0, true,
+        Arrays.asList("FAILED", "PASSED", "PASSED")));
+    writer.writeEntry(new Entry(CLASS_NAME + "#refund", 2, -1, 0.125, true, Arrays.asList("FAILED", "PASSED")));
+    writer.endSection();
+    writer.beginSection("failedTests");
+    writer.writeEntry(new Entry(CLASS_NAME + "#broken", 1, 42, 0.5, false, Arrays.asList("FAILED")));
+    writer.endSection();
+  }
+
+  private static String toJson(byte[] report) throws IOException {
+    StringWriter out = new StringWriter();
+    try (JsonWriter json = new JsonWriter(out)) {
+      BinaryReport.toJson(new ByteArrayInputStream(report), json);
+    }
+    return out.toString();
+  }
+
+  private static int occurrences(String text, String value) {
+    int count = 0;
+    for (int index = text.indexOf(value); index >= 0; index = text.indexOf(value, index + 1)) {
+      count++;
+    }
+    return count;
+  }
+
+  // DTO class for JSON serialization
+  private static class Entry {
+    private final String testName;
+    private final int count;
+    private final long totalNanos;
+    private final double rate;
+    private final boolean flaky;
+    private final List<String> statuses;
+    // Never set, so left out of both formats
+    private String note;
+
+    Entry(String testName, int count, long totalNanos, double rate, boolean flaky, List<String> statuses) {
+      this.testName = testName;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.rate = rate;
+      this.flaky = flaky;
+      this.statuses = statuses;
+    }
+  }
+}
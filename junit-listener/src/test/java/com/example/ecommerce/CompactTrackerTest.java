@@ -0,0 +1,159 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Attempt;
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CompactTracker Tests")
+class CompactTrackerTest {
+
+  private static final int WRITERS = 8;
+  private static final int TESTS = 2000;
+  private static final int ROUNDS = 10;
+  private static final Attempt ATTEMPT = new Attempt("PASSED", 1000, 800, 64, 0);
+
+  private final AtomicInteger nextId = new AtomicInteger();
+  private CompactTracker tracker;
+  private String[] uniqueIds;
+
+  @BeforeEach
+  void setUp() {
+    tracker = new CompactTracker(nextId::getAndIncrement);
+    uniqueIds = new String[TESTS];
+    for (int i = 0; i < TESTS; i++) {
+      uniqueIds[i] = "[engine:junit-jupiter]/[class:com.example.SomeTest]/[method:test" + i + "()]";
+    }
+  }
+
+  @Test
+  @DisplayName("Should count every pass from concurrent writers")
+  void shouldCountEveryPassFromConcurrentWriters() throws Exception {
+    runWriters();
+
+    Set<Integer> ids = new HashSet<>();
+    for (String uniqueId : uniqueIds) {
+      Data view = tracker.view(uniqueId);
+      assertThat(view.getCount()).isEqualTo(WRITERS * ROUNDS);
+      assertThat(view.getTotalWallNanos()).isEqualTo(WRITERS * ROUNDS * ATTEMPT.getWallNanos());
+      ids.add(view.getId());
+    }
+    // One dense id per test, however many threads saw it first
+    assertThat(ids).hasSize(TESTS);
+    assertThat(nextId.get()).isEqualTo(TESTS);
+  }
+
+  @Test
+  @DisplayName("Should drain every pass exactly once while writers run")
+  void shouldDrainEveryPassOnceWhileWritersRun() throws Exception {
+    // Only touched by one drain at a time, first on the drainer thread and then on this one
+    Map<String, Integer> drained = new HashMap<>();
+    AtomicInteger mismatches = new AtomicInteger();
+    CompactTracker.ChangeVisitor visitor = (id, uniqueId, count, newPasses, totalWallNanos, totalAllocatedBytes) -> {
+      // The passes drained so far add up to the count the test had when it was drained
+      if (newPasses <= 0 || drained.merge(uniqueId, newPasses, Integer::sum) != count) {
+        mismatches.incrementAndGet();
+      }
+    };
+    AtomicBoolean writing = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> drainer = executor.submit(() -> {
+        while (writing.get()) {
+          tracker.drainDirty(visitor);
+        }
+      });
+      try {
+        runWriters();
+      } finally {
+        writing.set(false);
+      }
+      drainer.get(1, TimeUnit.MINUTES);
+    } finally {
+      executor.shutdownNow();
+    }
+    tracker.drainDirty(visitor);
+
+    assertThat(mismatches.get()).isZero();
+    assertThat(tracker.dirtyCount()).isZero();
+    assertThat(drained).hasSize(TESTS);
+    for (String uniqueId : uniqueIds) {
+      assertThat(drained.get(uniqueId)).isEqualTo(WRITERS * ROUNDS);
+    }
+  }
+
+  @Test
+  @DisplayName("Should hand a promoted test over once")
+  void shouldHandPromotedTestOverOnce() {
+    tracker.recordPassed(uniqueIds[0], "com.example.SomeTest", ATTEMPT);
+    tracker.recordPassed(uniqueIds[0], "com.example.SomeTest", ATTEMPT);
+    tracker.recordPassed(uniqueIds[1], "com.example.SomeTest", null);
+
+    Data promoted = tracker.promote(uniqueIds[0]);
+
+    assertThat(promoted.getCount()).isEqualTo(2);
+    assertThat(promoted.getId()).isEqualTo(0);
+    assertThat(tracker.promote(uniqueIds[0])).isNull();
+    List<String> remaining = new ArrayList<>();
+    for (Data view : tracker.views()) {
+      remaining.add(view.getUniqueId());
+    }
+    assertThat(remaining).containsExactly(uniqueIds[1]);
+    List<String> visited = new ArrayList<>();
+    tracker.drainDirty((id, uniqueId, count, newPasses, totalWallNanos, totalAllocatedBytes) -> visited.add(uniqueId));
+    assertThat(visited).containsExactly(uniqueIds[1]);
+  }
+
+  @Test
+  @DisplayName("Should not know tests that never passed")
+  void shouldNotKnowTestsThatNeverPassed() {
+    assertThat(tracker.getCount(uniqueIds[0])).isZero();
+    assertThat(tracker.view(uniqueIds[0])).isNull();
+    assertThat(tracker.promote(uniqueIds[0])).isNull();
+  }
+
+  // Every writer records each test ROUNDS times, all in the same order so that they meet on the same rows
+  private void runWriters() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> writers = new ArrayList<>();
+      for (int writer = 0; writer < WRITERS; writer++) {
+        // Half the writers pass equal but distinct key instances
+        boolean copyKeys = writer % 2 == 1;
+        writers.add(executor.submit(() -> {
+          start.await();
+          for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < TESTS; i++) {
+              String uniqueId = copyKeys ? new String(uniqueIds[i]) : uniqueIds[i];
+              tracker.recordPassed(uniqueId, "com.example.SomeTest", ATTEMPT);
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> writer : writers) {
+        writer.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
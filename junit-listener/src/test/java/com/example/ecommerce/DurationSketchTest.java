@@ -0,0 +1,113 @@
+package com.example.ecommerce;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("DurationSketch Tests")
+class DurationSketchTest {
+
+  private static final long MILLIS = 1_000_000L;
+
+  @Test
+  @DisplayName("Should estimate quantiles within the accuracy")
+  void shouldEstimateQuantilesWithinAccuracy() {
+    DurationSketch sketch = new DurationSketch();
+    List<Long> durations = new ArrayList<>();
+    // 1 ms to 1 s in 1% steps, a wider range than the buckets cover, so the fastest ones get folded
+    for (long nanos = MILLIS; nanos <= 1000 * MILLIS; nanos += nanos / 100) {
+      sketch.add(nanos, 1);
+      durations.add(nanos);
+    }
+
+    assertThat(sketch.weight()).isEqualTo((double) durations.size());
+    for (double q : new double[] {0.5, 0.9, 0.99}) {
+      long expected = durations.get((int) Math.ceil(q * durations.size()) - 1);
+      assertThat(Math.exp(sketch.logQuantile(q))).isCloseTo(expected, within(expected * DurationSketch.ACCURACY));
+    }
+  }
+
+  @Test
+  @DisplayName("Should keep at most MAX_BUCKETS buckets")
+  void shouldBoundBuckets() throws IOException {
+    DurationSketch sketch = new DurationSketch();
+    for (long nanos = 1000; nanos < 1_000_000_000_000L; nanos += nanos / 100) {
+      sketch.add(nanos, 1);
+    }
+
+    assertThat(serialize(sketch).length).isEqualTo(2 + 6 * DurationSketch.MAX_BUCKETS);
+  }
+
+  @Test
+  @DisplayName("Should read back what it wrote")
+  void shouldReadBackWhatItWrote() throws IOException {
+    DurationSketch sketch = new DurationSketch();
+    sketch.add(3 * MILLIS, 1);
+    sketch.add(3 * MILLIS, 0.5);
+    sketch.add(250 * MILLIS, 2);
+
+    byte[] bytes = serialize(sketch);
+    DurationSketch read = DurationSketch.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+
+    // Two buckets, each an index and a weight
+    assertThat(bytes.length).isEqualTo(2 + 2 * 6);
+    assertThat(serialize(read)).isEqualTo(bytes);
+    assertThat(read.weight()).isEqualTo(3.5);
+    assertThat(read.logQuantile(0.5)).isEqualTo(sketch.logQuantile(0.5));
+  }
+
+  @Test
+  @DisplayName("Should merge into the same sketch as adding everything to one")
+  void shouldMergeLikeAddingToOne() throws IOException {
+    DurationSketch fork1 = new DurationSketch();
+    DurationSketch fork2 = new DurationSketch();
+    DurationSketch all = new DurationSketch();
+    for (long millis = 1; millis <= 400; millis++) {
+      (millis % 2 == 0 ? fork1 : fork2).add(millis * MILLIS, 1);
+      all.add(millis * MILLIS, 1);
+    }
+
+    fork1.merge(fork2);
+
+    assertThat(serialize(fork1)).isEqualTo(serialize(all));
+  }
+
+  @Test
+  @DisplayName("Should drop buckets that faded out")
+  void shouldDropFadedBuckets() {
+    DurationSketch sketch = new DurationSketch();
+    sketch.add(5 * MILLIS, 1);
+    sketch.add(80 * MILLIS, 100);
+
+    sketch.scale(0.0001);
+
+    assertThat(sketch.weight()).isCloseTo(0.01, within(1e-6));
+    assertThat(Math.exp(sketch.logQuantile(0))).isGreaterThan(70 * MILLIS);
+  }
+
+  @Test
+  @DisplayName("Should have no quantiles when empty")
+  void shouldHaveNoQuantilesWhenEmpty() {
+    DurationSketch sketch = new DurationSketch();
+
+    assertThat(sketch.isEmpty()).isTrue();
+    assertThat(sketch.logQuantile(0.5)).isNaN();
+  }
+
+  private static byte[] serialize(DurationSketch sketch) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      sketch.write(out);
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,74 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("FailureCatalog Tests")
+class FailureCatalogTest {
+
+  @Test
+  @DisplayName("Should hash the test's frames of a reflectively constructed exception")
+  void shouldHashFramesOfReflectivelyConstructedException() throws Exception {
+    AssertionError failure = failInCheckout();
+    AssertionError classOnly = new AssertionError("expected: <1> but was: <2>");
+    classOnly.setStackTrace(new StackTraceElement[0]);
+
+    assertThat(failure.getStackTrace()[0].getClassName()).isNotEqualTo(FailureCatalogTest.class.getName());
+    assertThat(FailureCatalog.fingerprint(failure)).isNotEqualTo(FailureCatalog.fingerprint(classOnly));
+  }
+
+  @Test
+  @DisplayName("Should tell different failure sites apart")
+  void shouldTellDifferentFailureSitesApart() throws Exception {
+    assertThat(FailureCatalog.fingerprint(failInCheckout()))
+        .isNotEqualTo(FailureCatalog.fingerprint(failInRefund()));
+  }
+
+  @Test
+  @DisplayName("Should give the same failure site the same fingerprint")
+  void shouldGiveSameFailureSiteSameFingerprint() throws Exception {
+    AssertionError first = failInCheckout();
+    AssertionError second = failInCheckout();
+
+    assertThat(FailureCatalog.fingerprint(first)).isEqualTo(FailureCatalog.fingerprint(second));
+  }
+
+  @Test
+  @DisplayName("Should intern one snapshot per fingerprint and count occurrences")
+  void shouldInternOneSnapshotPerFingerprint() throws Exception {
+    FailureCatalog catalog = new FailureCatalog();
+
+    FailureSnapshot first = catalog.record(failInCheckout(), 10);
+    FailureSnapshot second = catalog.record(failInCheckout(), 10);
+    catalog.record(failInRefund(), 10);
+
+    assertThat(second).isSameAs(first);
+    assertThat(catalog.getFailures()).hasSize(2);
+    assertThat(catalog.getFailures().stream().mapToLong(FailureCatalog.Failure::getOccurrences).sum())
+        .isEqualTo(3L);
+  }
+
+  @Test
+  @DisplayName("Should drop generated suffixes of classes and lambdas")
+  void shouldDropGeneratedSuffixes() {
+    assertThat(FailureCatalog.normalizeClass("com.example.Foo$$Lambda$123/0x0000000800c0b448"))
+        .isEqualTo("com.example.Foo");
+    assertThat(FailureCatalog.normalizeMethod("lambda$shouldFail$3")).isEqualTo("lambda$shouldFail");
+    assertThat(FailureCatalog.normalizeMethod("shouldFail")).isEqualTo("shouldFail");
+  }
+
+  private static AssertionError failInCheckout() throws Exception {
+    return newAssertionError("expected: <1> but was: <2>");
+  }
+
+  private static AssertionError failInRefund() throws Exception {
+    return newAssertionError("expected: <3> but was: <4>");
+  }
+
+  // Like AssertJ, which creates its AssertionFailedError through a reflective constructor call
+  private static AssertionError newAssertionError(String message) throws Exception {
+    return AssertionError.class.getConstructor(Object.class).newInstance(message);
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("FlakeEstimate Tests")
+class FlakeEstimateTest {
+
+  private static final double CONFIDENCE = 0.95;
+  private static final double PRECISION = 0.05;
+
+  @Test
+  @DisplayName("Should compute two-sided critical values")
+  void shouldComputeCriticalValues() {
+    assertThat(FlakeEstimate.zScore(0.05)).isCloseTo(1.95996, within(1e-4));
+    assertThat(FlakeEstimate.zScore(0.01)).isCloseTo(2.57583, within(1e-4));
+  }
+
+  @Test
+  @DisplayName("Should look after the first runs and then at every doubling")
+  void shouldLookAtDoublings() {
+    assertThat(FlakeEstimate.isLook(FlakeEstimate.FIRST_LOOK)).isTrue();
+    assertThat(FlakeEstimate.isLook(2 * FlakeEstimate.FIRST_LOOK)).isTrue();
+    assertThat(FlakeEstimate.isLook(4 * FlakeEstimate.FIRST_LOOK)).isTrue();
+    assertThat(FlakeEstimate.isLook(3 * FlakeEstimate.FIRST_LOOK)).isFalse();
+    assertThat(FlakeEstimate.isLook(FlakeEstimate.FIRST_LOOK + 1)).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should keep the interval inside [0, 1] without failures")
+  void shouldKeepIntervalInsideUnitWithoutFailures() {
+    FlakeEstimate estimate = new FlakeEstimate("test", 8, 0, 1, CONFIDENCE, PRECISION);
+
+    assertThat(estimate.getFlakeRate()).isZero();
+    assertThat(estimate.getLowerBound()).isCloseTo(0, within(1e-12));
+    assertThat(estimate.getUpperBound()).isBetween(0.0, 1.0);
+    assertThat(estimate.getVerdict()).isEqualTo("UNDECIDED");
+  }
+
+  @Test
+  @DisplayName("Should call a test that fails most runs broken")
+  void shouldCallMostlyFailingTestBroken() {
+    FlakeEstimate estimate = new FlakeEstimate("test", 32, 30, 3, CONFIDENCE, PRECISION);
+
+    assertThat(estimate.getLowerBound()).isGreaterThan(0.5);
+    assertThat(estimate.isSettled()).isTrue();
+    assertThat(estimate.getVerdict()).isEqualTo("BROKEN");
+  }
+
+  @Test
+  @DisplayName("Should widen the interval with every look")
+  void shouldWidenIntervalWithEveryLook() {
+    FlakeEstimate once = new FlakeEstimate("test", 128, 13, 1, CONFIDENCE, PRECISION);
+    FlakeEstimate often = new FlakeEstimate("test", 128, 13, 5, CONFIDENCE, PRECISION);
+
+    assertThat(often.getUpperBound() - often.getLowerBound())
+        .isGreaterThan(once.getUpperBound() - once.getLowerBound());
+  }
+
+  @Test
+  @DisplayName("Should merge forks at the level of the fork that looked most")
+  void shouldMergeAtLevelOfMostLooks() {
+    FlakeEstimate fork1 = new FlakeEstimate("test", 64, 6, 4, CONFIDENCE, PRECISION);
+    FlakeEstimate fork2 = new FlakeEstimate("test", 16, 2, 2, CONFIDENCE, PRECISION);
+
+    FlakeEstimate merged = fork1.merge(fork2);
+
+    assertThat(merged.getRuns()).isEqualTo(80);
+    assertThat(merged.getFailures()).isEqualTo(8);
+    assertThat(merged.getLooks()).isEqualTo(4);
+    assertThat(merged.getFlakeRate()).isCloseTo(0.1, within(1e-12));
+  }
+}
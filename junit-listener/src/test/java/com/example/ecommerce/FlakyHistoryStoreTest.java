@@ -0,0 +1,184 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.FlakyHistoryStore.Outcome;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.junit.jupiter.api.parallel.Resources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("FlakyHistoryStore Tests")
+// Sessions are keyed on maven.build.timestamp, which these tests set per simulated build
+@ResourceLock(Resources.SYSTEM_PROPERTIES)
+class FlakyHistoryStoreTest {
+
+  private static final String BUILD_TIMESTAMP = "maven.build.timestamp";
+  private static final long KEEP = TimeUnit.DAYS.toMillis(30);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  @DisplayName("Should keep the flake rate across builds")
+  void shouldKeepFlakeRateAcrossBuilds() throws IOException {
+    try (FlakyHistoryStore store = open("build-1", KEEP)) {
+      store.append(Collections.singletonList(new Outcome("test", 1, 1)));
+    }
+    try (FlakyHistoryStore store = open("build-2", KEEP)) {
+      store.append(Collections.singletonList(new Outcome("test", 1, 0)));
+
+      assertThat(store.sessions("test")).isEqualTo(2);
+      // A flaky build, then a green one weighted by ALPHA
+      assertThat(store.flakeRate("test")).isCloseTo(1 - FlakyHistoryStore.ALPHA, within(1e-9));
+    }
+  }
+
+  @Test
+  @DisplayName("Should count the forks of one build as one session")
+  void shouldCountForksOfOneBuildAsOneSession() throws IOException {
+    try (FlakyHistoryStore fork1 = open("build-1", KEEP); FlakyHistoryStore fork2 = open("build-1", KEEP)) {
+      fork1.append(Collections.singletonList(new Outcome("test", 1, 0)));
+      fork2.append(Collections.singletonList(new Outcome("test", 0, 1)));
+    }
+
+    try (FlakyHistoryStore store = open("build-2", KEEP)) {
+      assertThat(store.sessions("test")).isEqualTo(1);
+      assertThat(store.flakeRate("test")).isEqualTo(1.0);
+    }
+  }
+
+  @Test
+  @DisplayName("Should read the segments of a fork that is still running")
+  void shouldReadSegmentsOfRunningFork() throws IOException {
+    try (FlakyHistoryStore running = open("build-1", KEEP)) {
+      running.append(Collections.singletonList(new Outcome("test", 2, 0)));
+
+      try (FlakyHistoryStore other = open("build-1", KEEP)) {
+        assertThat(other.sessions("test")).isEqualTo(1);
+        assertThat(other.flakeRate("test")).isZero();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should ignore a torn record at the end of a segment")
+  void shouldIgnoreTornRecord() throws IOException {
+    writeTwoRecordsAndDropSummary();
+    Path segment = onlySegment();
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    try (FlakyHistoryStore store = open("build-2", KEEP)) {
+      assertThat(store.sessions("first")).isEqualTo(1);
+      assertThat(store.sessions("second")).isZero();
+    }
+  }
+
+  @Test
+  @DisplayName("Should ignore a record whose checksum does not match")
+  void shouldIgnoreCorruptRecord() throws IOException {
+    writeTwoRecordsAndDropSummary();
+    Path segment = onlySegment();
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer last = ByteBuffer.allocate(1);
+      channel.read(last, channel.size() - 1);
+      last.put(0, (byte) (last.get(0) ^ 0xff));
+      last.rewind();
+      channel.write(last, channel.size() - 1);
+    }
+
+    try (FlakyHistoryStore store = open("build-2", KEEP)) {
+      assertThat(store.sessions("first")).isEqualTo(1);
+      assertThat(store.sessions("second")).isZero();
+    }
+  }
+
+  @Test
+  @DisplayName("Should leave the current build out of the duration baseline")
+  void shouldLeaveCurrentBuildOutOfDurationBaseline() throws IOException {
+    try (FlakyHistoryStore store = open("build-1", KEEP)) {
+      store.append(Collections.singletonList(new Outcome("test", 1, 0, durations(10_000_000L))));
+
+      assertThat(store.durationBaseline("test")).isNull();
+    }
+    try (FlakyHistoryStore store = open("build-2", KEEP)) {
+      store.append(Collections.singletonList(new Outcome("test", 1, 0, durations(50_000_000L))));
+
+      DurationSketch baseline = store.durationBaseline("test");
+      assertThat(baseline.weight()).isEqualTo(1.0);
+      assertThat(Math.exp(baseline.logQuantile(0.5))).isCloseTo(10_000_000.0, within(200_000.0));
+    }
+  }
+
+  @Test
+  @DisplayName("Should evict tests that no build ran within the maximum age")
+  void shouldEvictTestsNotRunWithinMaxAge() throws IOException, InterruptedException {
+    try (FlakyHistoryStore store = open("build-1", KEEP)) {
+      store.append(Collections.singletonList(new Outcome("deleted", 1, 0)));
+    }
+    Thread.sleep(400);
+    try (FlakyHistoryStore store = open("build-2", 200)) {
+      store.append(Collections.singletonList(new Outcome("kept", 1, 0)));
+    }
+
+    try (FlakyHistoryStore store = open("build-3", KEEP)) {
+      assertThat(store.sessions("deleted")).isZero();
+      assertThat(store.sessions("kept")).isEqualTo(1);
+    }
+  }
+
+  private FlakyHistoryStore open(String buildTimestamp, long maxAgeMillis) throws IOException {
+    String previous = System.getProperty(BUILD_TIMESTAMP);
+    System.setProperty(BUILD_TIMESTAMP, buildTimestamp);
+    try {
+      return FlakyHistoryStore.open(directory, 1024 * 1024, 8, maxAgeMillis);
+    } finally {
+      if (previous == null) {
+        System.clearProperty(BUILD_TIMESTAMP);
+      } else {
+        System.setProperty(BUILD_TIMESTAMP, previous);
+      }
+    }
+  }
+
+  // Leaves one segment with two records and no summary, so the next open replays it from the start
+  private void writeTwoRecordsAndDropSummary() throws IOException {
+    try (FlakyHistoryStore store = open("build-1", KEEP)) {
+      store.append(Arrays.asList(new Outcome("first", 1, 0), new Outcome("second", 1, 0)));
+    }
+    Files.delete(directory.resolve("summary.bin"));
+  }
+
+  private Path onlySegment() throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+      for (Path path : stream) {
+        segments.add(path);
+      }
+    }
+    assertThat(segments).hasSize(1);
+    return segments.get(0);
+  }
+
+  private static DurationSketch durations(long nanos) {
+    DurationSketch sketch = new DurationSketch();
+    sketch.add(nanos, 1);
+    return sketch;
+  }
+}
@@ -0,0 +1,130 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Attempt;
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("MyTestWatcher Tests")
+class MyTestWatcherTest {
+
+  private static final int WRITERS = 8;
+  private static final int ROUNDS = 500;
+
+  @Test
+  @DisplayName("Should count every attempt recorded for one test from concurrent threads")
+  void shouldCountEveryAttemptFromConcurrentThreads() throws Exception {
+    // A test id of its own, so that a rerun in the same JVM starts from zero
+    String uniqueId = "[engine:junit-jupiter]/[class:" + MyTestWatcherTest.class.getName() + "]/[method:records-"
+        + UUID.randomUUID() + "()]";
+    ExtensionContext context = context(uniqueId);
+    AssertionError cause = new AssertionError("concurrent");
+
+    // Every writer starts with a failure, so all of them race to register the test
+    runWriters(writer -> {
+      for (int round = 0; round < ROUNDS; round++) {
+        if (round % 2 == 0) {
+          MyTestWatcher.recordFailure(context, cause);
+        } else {
+          MyTestWatcher.recordSuccess(context);
+        }
+      }
+    });
+
+    Data data = DataStore.instance.getTracker().get(uniqueId);
+    Data.Snapshot state = data.snapshot();
+    assertThat(state.getCount()).isEqualTo(WRITERS * ROUNDS);
+    assertThat(state.getFailureCount()).isEqualTo(WRITERS * ROUNDS / 2);
+    // One entry and one dense id, however many threads registered the test at once
+    assertThat(DataStore.instance.getTest(data.getId())).isSameAs(data);
+  }
+
+  @Test
+  @DisplayName("Should keep the latest attempts in the ring while writers race")
+  void shouldKeepLatestAttemptsInRing() throws Exception {
+    Data data = new Data(0, "[engine:junit-jupiter]/[class:SomeTest]/[method:test()]", "SomeTest");
+    FailureSnapshot failure = new FailureCatalog().record(new AssertionError("concurrent"), 10);
+    int total = WRITERS * ROUNDS;
+    // The attempt each successful swap added, by the count it installed
+    AtomicReferenceArray<Attempt> installed = new AtomicReferenceArray<>(total + 1);
+
+    runWriters(writer -> {
+      for (int round = 0; round < ROUNDS; round++) {
+        boolean failed = round % 2 == 0;
+        Attempt attempt = new Attempt(failed ? "FAILED" : "PASSED", writer * ROUNDS + round + 1, 0, 0, 0);
+        Data.Snapshot state = data.record(attempt.getStatus(), failed ? failure : null, attempt);
+        if (!installed.compareAndSet(state.getCount(), null, attempt)) {
+          throw new AssertionError("count " + state.getCount() + " installed twice");
+        }
+      }
+    });
+
+    Data.Snapshot state = data.snapshot();
+    assertThat(state.getCount()).isEqualTo(total);
+    assertThat(state.getFailureCount()).isEqualTo(total / 2);
+    assertThat(state.getTotalWallNanos()).isEqualTo((long) total * (total + 1) / 2);
+    assertThat(state.getMaxWallNanos()).isEqualTo((long) total);
+    List<Attempt> latest = new ArrayList<>();
+    for (int count = total - Data.RECENT_ATTEMPTS + 1; count <= total; count++) {
+      latest.add(installed.get(count));
+    }
+    // The ring holds the attempts of the last swaps, oldest first
+    assertThat(state.getAttempts()).containsExactlyElementsOf(latest);
+  }
+
+  private static void runWriters(Writer body) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> writers = new ArrayList<>();
+      for (int writer = 0; writer < WRITERS; writer++) {
+        int index = writer;
+        writers.add(executor.submit((Callable<Void>) () -> {
+          start.await();
+          body.run(index);
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> writer : writers) {
+        writer.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // Only what the record methods ask of a test's context
+  private static ExtensionContext context(String uniqueId) {
+    return (ExtensionContext) Proxy.newProxyInstance(ExtensionContext.class.getClassLoader(),
+        new Class<?>[] {ExtensionContext.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getUniqueId":
+              return uniqueId;
+            case "getTestClass":
+              return Optional.of(MyTestWatcherTest.class);
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  private interface Writer {
+    void run(int writer);
+  }
+}
@@ -0,0 +1,224 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.MyTestWatcher.Data;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestExecutionResult.Status;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("RetryInterceptor Tests")
+// Swaps the DataStore configuration, which every test of this JVM reads
+@Isolated
+class RetryInterceptorTest {
+
+  @Test
+  @DisplayName("Should pass a test that passes on retry")
+  void shouldPassTestThatPassesOnRetry() {
+    PassesOnSecondAttempt.attempts.set(0);
+
+    Result result = execute(PassesOnSecondAttempt.class, WatcherConfig.RETRY_COUNT, "2");
+
+    assertThat(result.status).isEqualTo(Status.SUCCESSFUL);
+    assertThat(PassesOnSecondAttempt.attempts.get()).isEqualTo(2);
+    // The interceptor records the failed attempt; the passing one is left to MyTestWatcher
+    assertThat(result.data().snapshot().getFailureCount()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should fail a test once its retries are exhausted")
+  void shouldFailTestOnceRetriesAreExhausted() {
+    AlwaysFails.attempts.set(0);
+
+    Result result = execute(AlwaysFails.class, WatcherConfig.RETRY_COUNT, "2");
+
+    assertThat(result.status).isEqualTo(Status.FAILED);
+    assertThat(AlwaysFails.attempts.get()).isEqualTo(3);
+    assertThat(result.data().snapshot().getFailureCount()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should run the per-method fixtures again for every retry")
+  void shouldRunFixturesAgainForEveryRetry() {
+    NeedsFreshFixture.events.clear();
+
+    Result result = execute(NeedsFreshFixture.class, WatcherConfig.RETRY_COUNT, "1");
+
+    assertThat(result.status).isEqualTo(Status.SUCCESSFUL);
+    assertThat(NeedsFreshFixture.events).containsExactly(
+        "before test", "test", "after", "before test", "test", "after");
+  }
+
+  @Test
+  @DisplayName("Should repeat a test that passed on retry until its estimate settles")
+  void shouldRepeatTestThatPassedOnRetry() {
+    FailsEveryOtherAttempt.attempts.set(0);
+
+    Result result = execute(FailsEveryOtherAttempt.class, WatcherConfig.RETRY_COUNT, "1",
+        WatcherConfig.CONFIDENCE_MAX_RUNS, "16", WatcherConfig.HISTORY_ENABLED, "false");
+
+    assertThat(result.status).isEqualTo(Status.SUCCESSFUL);
+    // A failure, the passing retry, then 16 repeats that alternate and end on a pass
+    assertThat(FailsEveryOtherAttempt.attempts.get()).isEqualTo(18);
+    FlakeEstimate estimate = result.data().getFlakeEstimate();
+    assertThat(estimate.getRuns()).isEqualTo(16);
+    assertThat(estimate.getFailures()).isEqualTo(8);
+    assertThat(result.data().snapshot().getFailureCount()).isEqualTo(9);
+  }
+
+  @Test
+  @DisplayName("Should not repeat a test that never passed")
+  void shouldNotRepeatTestThatNeverPassed() {
+    NeverPasses.attempts.set(0);
+
+    Result result = execute(NeverPasses.class, WatcherConfig.RETRY_COUNT, "2",
+        WatcherConfig.CONFIDENCE_MAX_RUNS, "16", WatcherConfig.HISTORY_ENABLED, "false");
+
+    assertThat(result.status).isEqualTo(Status.FAILED);
+    assertThat(NeverPasses.attempts.get()).isEqualTo(3);
+    assertThat(result.data().getFlakeEstimate()).isNull();
+  }
+
+  // Runs one fixture class on a launcher of its own, with the interceptor as its only extension
+  static Result execute(Class<?> fixture, String... parameters) {
+    LauncherDiscoveryRequestBuilder builder = LauncherDiscoveryRequestBuilder.request()
+        .selectors(DiscoverySelectors.selectClass(fixture))
+        .configurationParameter("junit.jupiter.extensions.autodetection.enabled", "false")
+        .configurationParameter("junit.jupiter.execution.parallel.enabled", "false");
+    for (int i = 0; i < parameters.length; i += 2) {
+      builder.configurationParameter(parameters[i], parameters[i + 1]);
+    }
+    LauncherDiscoveryRequest request = builder.build();
+    // Without the watcher's own listeners, which would write a report for this plan
+    Launcher launcher = LauncherFactory.create(LauncherConfig.builder()
+        .enableTestExecutionListenerAutoRegistration(false)
+        .enableLauncherSessionListenerAutoRegistration(false)
+        .build());
+    Result result = new Result();
+    WatcherConfig previous = DataStore.instance.getConfig();
+    try {
+      launcher.execute(request, new TestExecutionListener() {
+        @Override
+        public void testPlanExecutionStarted(TestPlan testPlan) {
+          DataStore.instance.setConfig(WatcherConfig.from(testPlan.getConfigurationParameters()));
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+          if (testIdentifier.isTest()) {
+            result.uniqueId = testIdentifier.getUniqueId();
+            result.status = testExecutionResult.getStatus();
+          }
+        }
+      });
+    } finally {
+      DataStore.instance.setConfig(previous);
+    }
+    // MyTestWatcher would close the clock of the last attempt when the test finishes
+    DataStore.instance.getInFlight().remove(result.uniqueId);
+    return result;
+  }
+
+  static final class Result {
+    private String uniqueId;
+    private Status status;
+
+    Data data() {
+      return DataStore.instance.getTracker().get(uniqueId);
+    }
+  }
+
+  @ExtendWith(RetryInterceptor.class)
+  static class PassesOnSecondAttempt {
+    static final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    void test() {
+      if (attempts.incrementAndGet() < 2) {
+        throw new AssertionError("first attempt");
+      }
+    }
+  }
+
+  @ExtendWith(RetryInterceptor.class)
+  static class AlwaysFails {
+    static final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    void test() {
+      attempts.incrementAndGet();
+      throw new AssertionError("always");
+    }
+  }
+
+  @ExtendWith(RetryInterceptor.class)
+  static class FailsEveryOtherAttempt {
+    static final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    void test() {
+      if (attempts.incrementAndGet() % 2 == 1) {
+        throw new AssertionError("odd attempt");
+      }
+    }
+  }
+
+  @ExtendWith(RetryInterceptor.class)
+  static class NeverPasses {
+    static final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    void test() {
+      attempts.incrementAndGet();
+      throw new AssertionError("never");
+    }
+  }
+
+  @ExtendWith(RetryInterceptor.class)
+  static class NeedsFreshFixture {
+    static final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private List<String> items;
+
+    @BeforeEach
+    void setUp(TestInfo testInfo) {
+      events.add("before " + testInfo.getTestMethod().map(method -> method.getName()).orElse(""));
+      items = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+      events.add("after");
+      items = null;
+    }
+
+    @Test
+    void test() {
+      events.add("test");
+      items.add("item");
+      // A retry on the first attempt's fixture would see two items
+      if (events.size() < 4 || items.size() != 1) {
+        throw new AssertionError("first attempt or stale fixture");
+      }
+    }
+  }
+}